@@ -0,0 +1,190 @@
+package com.umarabdul.jspider;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+* Line-based control socket of a running spider, bound to the loopback interface only.
+* Each line sent is one command, answered by a single line starting with "OK" or "ERR",
+* so a crawl can be tuned with {@code nc 127.0.0.1 <port>} without restarting it:
+*
+* <pre>
+* status               State, workers, pages, bytes and time of the crawl
+* pause | resume       Stop/restart taking new pages
+* threads &lt;n&gt;          Grow or shrink the worker pool
+* max &lt;pages&gt;          Page budget
+* bytes &lt;n&gt;            Byte budget, 0 for no limit
+* time &lt;seconds&gt;       Wall-clock budget from the start of the crawl, 0 for no limit
+* timeout &lt;ms&gt;         Read timeout of new fetches
+* drain                Stop taking new pages, report the fetches in flight
+* quit                 Close the connection
+* </pre>
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class AdminServer implements Runnable, Closeable{
+
+  private JSpider spider;
+  private ServerSocket server;
+  private volatile boolean closed;
+
+  /**
+  * AdminServer's constructor. Binds the socket, call {@code start()} to accept connections.
+  * @param spider Spider to control.
+  * @param port Port to listen on, 0 for any free port.
+  * @throws IOException if the port can't be bound.
+  */
+  public AdminServer(JSpider spider, int port) throws IOException{
+
+    this.spider = spider;
+    server = new ServerSocket(port, 8, InetAddress.getLoopbackAddress());
+    closed = false;
+  }
+
+  /**
+  * Obtain the port the server listens on.
+  * @return Port number.
+  */
+  public int getPort(){
+    return server.getLocalPort();
+  }
+
+  /**
+  * Start accepting connections on a daemon thread.
+  */
+  public void start(){
+
+    Thread t = new Thread(this, "JSpider-admin");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  /**
+  * Accept connections, serving each on its own daemon thread. Accept errors (e.g. out of file descriptors)
+  * are reported once, then retried with a growing delay, up to 5 seconds, until a connection is accepted.
+  */
+  @Override
+  public void run(){
+
+    long delay = 0; // Delay before the next accept, after errors.
+    while (!(closed)){
+      try{
+        Socket client = server.accept();
+        delay = 0;
+        Thread t = new Thread(() -> serve(client), "JSpider-admin-client");
+        t.setDaemon(true);
+        t.start();
+      }catch(IOException e){
+        if (closed)
+          break;
+        if (delay == 0)
+          spider.addStatus("[-] AdminServer: " + e.getMessage());
+        delay = Math.min(5000, Math.max(100, delay * 2));
+        try{
+          Thread.sleep(delay);
+        }catch(InterruptedException e2){
+          break;
+        }
+      }
+    }
+  }
+
+  private void serve(Socket client){
+
+    try (Socket sock = client;
+         BufferedReader in = new BufferedReader(new InputStreamReader(sock.getInputStream(), StandardCharsets.UTF_8));
+         PrintWriter out = new PrintWriter(new OutputStreamWriter(sock.getOutputStream(), StandardCharsets.UTF_8), true)){
+      String line;
+      while (!(closed) && (line = in.readLine()) != null){
+        line = line.trim();
+        if (line.length() == 0)
+          continue;
+        if (line.equalsIgnoreCase("quit"))
+          break;
+        out.println(execute(line));
+      }
+    }catch(IOException ignored){}
+  }
+
+  /**
+  * Execute a command.
+  * @param line Command line.
+  * @return Reply line, starting with "OK" or "ERR".
+  */
+  public String execute(String line){
+
+    String[] parts = line.trim().split("\\s+");
+    String cmd = parts[0].toLowerCase();
+    try{
+      switch (cmd){
+        case "status":
+          return "OK " + status();
+        case "pause":
+          spider.pause();
+          return "OK paused";
+        case "resume":
+          spider.resume();
+          return "OK resumed";
+        case "drain":
+          return String.format("OK draining, %d fetches in flight", spider.drain());
+        case "threads":
+          int count = Integer.parseInt(arg(parts));
+          if (count < 1)
+            return "ERR threads must be at least 1";
+          spider.resize(count);
+          return "OK threads " + spider.getPoolSize();
+        case "max":
+          spider.setMax(Integer.parseInt(arg(parts)));
+          return "OK max " + spider.getMax();
+        case "bytes":
+          spider.setMaxBytes(Long.parseLong(arg(parts)));
+          return "OK bytes " + spider.getMaxBytes();
+        case "time":
+          spider.setTimeLimit(Long.parseLong(arg(parts)) * 1000);
+          return "OK time " + (spider.getTimeLimit() / 1000);
+        case "timeout":
+          spider.setTimeout(Integer.parseInt(arg(parts)));
+          return "OK timeout " + spider.getTimeout();
+        default:
+          return "ERR unknown command: " + cmd;
+      }
+    }catch(NumberFormatException e){
+      return "ERR invalid number: " + (parts.length > 1 ? parts[1] : "");
+    }catch(IllegalArgumentException e){
+      return "ERR " + e.getMessage();
+    }
+  }
+
+  private static String arg(String[] parts){
+
+    if (parts.length < 2)
+      throw new IllegalArgumentException(parts[0] + " needs a value");
+    return parts[1];
+  }
+
+  private String status(){
+
+    String state = (spider.isPaused() ? "paused" : (spider.isActive() ? "running" : (spider.getWorkerCount() > 0 ? "draining" : "stopped")));
+    return String.format("state=%s workers=%d inflight=%d pages=%d/%d urls=%d queued=%d bytes=%d/%d elapsed=%d/%ds",
+                         state, spider.getWorkerCount(), spider.getInFlight(), spider.getPageCount(), spider.getMax(),
+                         spider.getURLCount(), spider.getQueuedCount(), spider.getBytes(), spider.getMaxBytes(),
+                         spider.getElapsed() / 1000, spider.getTimeLimit() / 1000);
+  }
+
+  /**
+  * Stop accepting connections.
+  */
+  @Override
+  public void close(){
+
+    closed = true;
+    try{
+      server.close();
+    }catch(IOException ignored){}
+  }
+}
@@ -0,0 +1,98 @@
+package com.umarabdul.jspider;
+
+import java.net.URL;
+import java.util.*;
+
+
+/**
+* Maps URL aliases to one canonical entry, for JSpider's deduplication.
+* A URL's key drops what rarely changes the page served: the scheme (http and https), a leading "www.",
+* default ports, and a trailing slash. Each key is owned by the first URL queued or fetched under it, so
+* other aliases of the key are not queued, and pages redirecting to a known key are recognized as copies.
+* Keys are interned in a {@link UrlStore} and owners kept in an array indexed by key ID.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+class CanonicalIndex{
+
+  private UrlStore keys; // Interned keys.
+  private int[] owners; // Key ID to ID of the owning URL.
+
+  CanonicalIndex(){
+
+    keys = new UrlStore();
+    owners = new int[1024];
+  }
+
+  /**
+  * Build the key of a URL.
+  * @param urlObj URL to normalize.
+  * @param query Keep the query string.
+  */
+  static String keyOf(URL urlObj, boolean query){
+
+    String host = urlObj.getHost().toLowerCase();
+    if (host.startsWith("www."))
+      host = host.substring(4);
+    int port = urlObj.getPort();
+    if (port == urlObj.getDefaultPort())
+      port = -1;
+    String path = urlObj.getPath();
+    if (path.endsWith("/"))
+      path = path.substring(0, path.length() - 1);
+    StringBuilder sb = new StringBuilder(host);
+    if (port != -1)
+      sb.append(":").append(port);
+    sb.append(path.length() == 0 ? "/" : path);
+    if (query && urlObj.getQuery() != null)
+      sb.append("?").append(urlObj.getQuery());
+    return sb.toString();
+  }
+
+  /**
+  * Claim the key of a URL for a URL ID, unless it already has an owner.
+  * @param urlObj URL whose key to claim.
+  * @param id ID of the claiming URL.
+  * @return ID of the current owner, -1 if the key was free (and is now owned by {@code id}).
+  */
+  synchronized int claim(URL urlObj, int id){
+
+    int key = keys.intern(keyOf(urlObj, true));
+    if (key >= owners.length)
+      owners = Arrays.copyOf(owners, Math.max(key + 1, owners.length * 2));
+    if (owners[key] != 0)
+      return owners[key] - 1;
+    owners[key] = id + 1;
+    return -1;
+  }
+
+  /**
+  * Find the owner of a URL's key.
+  * @param urlObj URL to look up.
+  * @return ID of the owning URL, -1 if none.
+  */
+  synchronized int ownerOf(URL urlObj){
+
+    int key = keys.find(keyOf(urlObj, true));
+    return (key == -1 || key >= owners.length ? -1 : owners[key] - 1);
+  }
+
+  /**
+  * Obtain the number of keys.
+  */
+  synchronized int size(){
+    return keys.size();
+  }
+
+  /**
+  * Remove all keys.
+  */
+  synchronized void clear(){
+
+    keys.clear();
+    Arrays.fill(owners, 0);
+  }
+}
@@ -0,0 +1,116 @@
+package com.umarabdul.jspider;
+
+
+/**
+* A per host circuit breaker. After repeated failures the circuit opens and the host's URLs are
+* parked instead of fetched. Once the cool-down expires a single probe request is let through:
+* success closes the circuit, failure reopens it with a doubled cool-down. DNS and connection
+* failures open the circuit at once, which doubles as a negative cache for unreachable hosts.
+* A host that keeps failing its probes is given up on.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class CircuitBreaker{
+
+  /**
+  * States of the circuit.
+  */
+  public enum State{
+    CLOSED, // Requests flow normally.
+    OPEN, // Requests are held until the cool-down expires.
+    HALF_OPEN // A single probe request is in flight.
+  }
+
+  private State state;
+  private int threshold; // Consecutive failures that open the circuit.
+  private long cooldown; // Base cool-down, in milliseconds.
+  private int maxTrips; // Consecutive openings after which the host is given up on.
+  private int failures; // Consecutive failures while closed.
+  private int trips; // Consecutive openings without a success.
+  private long openUntil; // Time the current cool-down expires.
+  private boolean probing; // A probe request is in flight.
+
+  /**
+  * CircuitBreaker's constructor.
+  * @param threshold Consecutive failures that open the circuit.
+  * @param cooldown Cool-down of the first opening, in milliseconds. Doubled on every consecutive opening.
+  * @param maxTrips Consecutive openings after which the host is considered dead.
+  */
+  public CircuitBreaker(int threshold, long cooldown, int maxTrips){
+
+    state = State.CLOSED;
+    this.threshold = Math.max(1, threshold);
+    this.cooldown = Math.max(0, cooldown);
+    this.maxTrips = Math.max(1, maxTrips);
+    failures = 0;
+    trips = 0;
+    openUntil = 0;
+    probing = false;
+  }
+
+  /**
+  * Check if a request to the host may be sent now. Moves an expired open circuit to half-open,
+  * in which case the caller's request is the probe.
+  * @param now Current time, in milliseconds.
+  * @return {@code true} if the request may be sent.
+  */
+  public synchronized boolean allowRequest(long now){
+
+    if (state == State.CLOSED)
+      return true;
+    if (state == State.OPEN && now >= openUntil && !(isDead())){
+      state = State.HALF_OPEN;
+      probing = true;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+  * Record a successful request, closing the circuit.
+  */
+  public synchronized void onSuccess(){
+
+    state = State.CLOSED;
+    failures = 0;
+    trips = 0;
+    probing = false;
+  }
+
+  /**
+  * Record a failed request.
+  * @param immediate Open the circuit regardless of the failure count, used for DNS and connection failures.
+  * @param now Current time, in milliseconds.
+  */
+  public synchronized void onFailure(boolean immediate, long now){
+
+    failures++;
+    if (state == State.HALF_OPEN || immediate || failures >= threshold){
+      if (state != State.OPEN)
+        trips++;
+      state = State.OPEN;
+      probing = false;
+      failures = 0;
+      openUntil = now + (cooldown << Math.min(trips - 1, 10));
+    }
+  }
+
+  /**
+  * Obtain the state of the circuit.
+  * @return State of the circuit.
+  */
+  public synchronized State getState(){
+    return state;
+  }
+
+  /**
+  * Check if the host has failed too many consecutive probes to be worth trying again.
+  * @return {@code true/false}.
+  */
+  public synchronized boolean isDead(){
+    return (trips > maxTrips);
+  }
+}
@@ -0,0 +1,136 @@
+package com.umarabdul.jspider;
+
+
+/**
+* An adaptive limit on the number of in-flight requests, in the spirit of TCP congestion control.
+* The limit grows additively while response latency stays close to the best observed latency,
+* shrinks gently when latency climbs, and is halved on congestion signals (timeouts, 429s and 5xxs).
+* A single congestion event can fail many in-flight requests at once, so the limit is halved at most
+* once per observed round trip.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class ConcurrencyLimiter{
+
+  private static final double TOLERANCE = 2.0; // Latency over baseline * TOLERANCE counts as queueing.
+  private static final double BACKOFF = 0.5; // Multiplier applied on congestion.
+  private static final double EASE = 0.9; // Multiplier applied on rising latency.
+
+  private double limit; // Current limit, fractional to allow additive growth.
+  private int minLimit;
+  private int maxLimit;
+  private int inFlight; // Requests currently holding a permit.
+  private double baseline; // Best recent latency, in milliseconds. Drifts up slowly to follow the server.
+  private double average; // Moving average of latency, in milliseconds.
+  private int samples; // Number of latency samples taken.
+  private long lastBackoff; // Time of the last multiplicative decrease.
+
+  /**
+  * ConcurrencyLimiter's constructor.
+  * @param initial Initial limit.
+  * @param minLimit Lowest the limit can go.
+  * @param maxLimit Highest the limit can go.
+  */
+  public ConcurrencyLimiter(int initial, int minLimit, int maxLimit){
+
+    this.minLimit = Math.max(1, minLimit);
+    this.maxLimit = Math.max(this.minLimit, maxLimit);
+    limit = Math.min(this.maxLimit, Math.max(this.minLimit, initial));
+    inFlight = 0;
+    baseline = -1;
+    average = -1;
+    samples = 0;
+    lastBackoff = 0;
+  }
+
+  /**
+  * Take a permit if the limit allows another request.
+  * @return {@code true} if a permit was taken, the caller must later call one of the release methods.
+  */
+  public synchronized boolean tryAcquire(){
+
+    if (inFlight >= (int)limit)
+      return false;
+    inFlight++;
+    return true;
+  }
+
+  /**
+  * Release a permit for a request that completed normally.
+  * @param latency Time taken by the request, in milliseconds.
+  */
+  public synchronized void onSuccess(long latency){
+
+    inFlight--;
+    samples++;
+    if (baseline < 0 || latency < baseline)
+      baseline = Math.max(1, latency);
+    else
+      baseline += (latency - baseline) * 0.01;
+    average = (average < 0 ? latency : (average * 0.8) + (latency * 0.2));
+    if (latency <= baseline * TOLERANCE)
+      limit = Math.min(maxLimit, limit + (1.0 / limit));
+    else
+      limit = Math.max(minLimit, limit * EASE);
+  }
+
+  /**
+  * Release a permit for a request that failed with a congestion signal.
+  */
+  public synchronized void onCongestion(){
+
+    inFlight--;
+    long now = System.currentTimeMillis();
+    long window = (long)Math.max(100, average);
+    if (now - lastBackoff < window)
+      return;
+    lastBackoff = now;
+    limit = Math.max(minLimit, limit * BACKOFF);
+  }
+
+  /**
+  * Release a permit without affecting the limit, for failures that say nothing about the server's load.
+  */
+  public synchronized void onIgnore(){
+    inFlight--;
+  }
+
+  /**
+  * Obtain the current limit.
+  * @return Max number of in-flight requests currently allowed.
+  */
+  public synchronized int getLimit(){
+    return (int)limit;
+  }
+
+  /**
+  * Obtain the number of requests holding a permit.
+  * @return Number of in-flight requests.
+  */
+  public synchronized int getInFlight(){
+    return inFlight;
+  }
+
+  /**
+  * Obtain the moving average of latency.
+  * @return Average latency in milliseconds, -1 if no sample was taken.
+  */
+  public synchronized long getAverageLatency(){
+    return (long)average;
+  }
+
+  /**
+  * Suggest a read timeout from observed latency, so a stalled request does not hold a slot much longer than a normal one.
+  * @param cap Configured timeout, never exceeded.
+  * @return Suggested timeout, in milliseconds.
+  */
+  public synchronized int getTimeout(int cap){
+
+    if (samples < 20)
+      return cap;
+    return (int)Math.min(cap, Math.max(2000, average * 10));
+  }
+}
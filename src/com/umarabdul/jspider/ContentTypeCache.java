@@ -0,0 +1,86 @@
+package com.umarabdul.jspider;
+
+import java.net.URL;
+import java.util.*;
+
+
+/**
+* Learns which URL patterns serve HTML, for JSpider's content sniffing mode.
+* A pattern is the host, the directory with digit runs folded, and the extension of the last path segment,
+* so {@code /files/2020/a.zip} and {@code /files/2021/b.zip} share the pattern {@code host/files/#/*.zip}.
+* Once a pattern has only produced non-HTML responses, further URLs matching it are not fetched.
+* Patterns with an unknown extension are excluded after the first non-HTML response, while extensionless
+* routes and page extensions need more evidence since they usually serve HTML.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+class ContentTypeCache{
+
+  private static final int MAX_PATTERNS = 100000; // New patterns beyond this are not tracked.
+  private static final int PAGE_THRESHOLD = 3; // Non-HTML responses excluding a page or extensionless pattern.
+
+  private HashMap<String, int[]> counts; // Pattern to {html, other} response counts.
+
+  ContentTypeCache(){
+    counts = new HashMap<String, int[]>();
+  }
+
+  /**
+  * Build the pattern of a URL.
+  */
+  static String patternOf(URL urlObj){
+
+    String path = urlObj.getPath();
+    int slash = path.lastIndexOf('/');
+    String dir = (slash == -1 ? "/" : path.substring(0, slash + 1));
+    String name = path.substring(slash + 1);
+    int dot = name.lastIndexOf('.');
+    String ext = (dot == -1 ? "" : name.substring(dot).toLowerCase());
+    return urlObj.getHost() + ":" + urlObj.getPort() + dir.replaceAll("[0-9]+", "#") + "*" + ext;
+  }
+
+  /**
+  * Record the outcome of a fetch.
+  * @param urlObj URL fetched.
+  * @param html {@code true} if it was parsed as a page.
+  * @param pageExt {@code true} if the URL is extensionless or has a page extension.
+  * @return The pattern if it just became excluded, {@code null} otherwise.
+  */
+  synchronized String record(URL urlObj, boolean html, boolean pageExt){
+
+    String pattern = patternOf(urlObj);
+    int[] c = counts.get(pattern);
+    if (c == null){
+      if (counts.size() >= MAX_PATTERNS)
+        return null;
+      c = new int[2];
+      counts.put(pattern, c);
+    }
+    boolean before = excluded(c, pageExt);
+    c[html ? 0 : 1]++;
+    return (!(before) && excluded(c, pageExt) ? pattern : null);
+  }
+
+  /**
+  * Check if URLs of a pattern should no longer be fetched.
+  * @param urlObj URL to check.
+  * @param pageExt {@code true} if the URL is extensionless or has a page extension.
+  * @return {@code true} if the pattern only produced non-HTML responses.
+  */
+  synchronized boolean isExcluded(URL urlObj, boolean pageExt){
+
+    int[] c = counts.get(patternOf(urlObj));
+    return (c != null && excluded(c, pageExt));
+  }
+
+  private static boolean excluded(int[] c, boolean pageExt){
+    return (c[0] == 0 && c[1] >= (pageExt ? PAGE_THRESHOLD : 1));
+  }
+
+  synchronized void clear(){
+    counts.clear();
+  }
+}
@@ -0,0 +1,730 @@
+package com.umarabdul.jspider;
+
+import java.net.*;
+import java.util.*;
+
+
+/**
+* Immutable configuration of a crawl, built with {@link CrawlConfig.Builder}.
+* A config can be shared by any number of crawls, since it can not be modified once built:
+* collections are copied by build() and returned unmodifiable. Defaults match those of the command line.
+*
+* <pre>
+* CrawlConfig config = new CrawlConfig.Builder("https://example.com/").threads(10).max(500).build();
+* JSpider spider = new JSpider(config);
+* </pre>
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public final class CrawlConfig{
+
+  private final String url;
+  private final int threads;
+  private final int timeout;
+  private final int max;
+  private final long maxBytes;
+  private final long timeLimit;
+  private final List<String> exts;
+  private final List<String> ignore;
+  private final boolean followExternal;
+  private final boolean hideExternal;
+  private final Map<String, String> headers;
+  private final Map<String, String> cookies;
+  private final String proxyHost;
+  private final int proxyPort;
+  private final boolean adaptive;
+  private final int maxThreads;
+  private final int maxRetries;
+  private final int breakerThreshold;
+  private final int maxBodySize;
+  private final List<String> contentTypes;
+  private final boolean sniff;
+  private final int nearDuplicates;
+  private final boolean scriptLinks;
+  private final boolean canonicalDedup;
+  private final int templateBudget;
+  private final double templateSample;
+  private final boolean memoryGuard;
+  private final boolean offHeap;
+  private final List<String> plugins;
+  private final Map<String, String> pluginOptions;
+
+  private CrawlConfig(Builder b){
+
+    url = b.url;
+    threads = b.threads;
+    timeout = b.timeout;
+    max = b.max;
+    maxBytes = b.maxBytes;
+    timeLimit = b.timeLimit;
+    exts = Collections.unmodifiableList(new ArrayList<String>(b.exts));
+    ignore = Collections.unmodifiableList(new ArrayList<String>(b.ignore));
+    followExternal = b.followExternal;
+    hideExternal = b.hideExternal;
+    headers = Collections.unmodifiableMap(new HashMap<String, String>(b.headers));
+    cookies = Collections.unmodifiableMap(new HashMap<String, String>(b.cookies));
+    proxyHost = b.proxyHost;
+    proxyPort = b.proxyPort;
+    adaptive = b.adaptive;
+    maxThreads = b.maxThreads;
+    maxRetries = b.maxRetries;
+    breakerThreshold = b.breakerThreshold;
+    maxBodySize = b.maxBodySize;
+    contentTypes = (b.contentTypes == null ? null : Collections.unmodifiableList(new ArrayList<String>(b.contentTypes)));
+    sniff = b.sniff;
+    nearDuplicates = b.nearDuplicates;
+    scriptLinks = b.scriptLinks;
+    canonicalDedup = b.canonicalDedup;
+    templateBudget = b.templateBudget;
+    templateSample = b.templateSample;
+    memoryGuard = b.memoryGuard;
+    offHeap = b.offHeap;
+    plugins = Collections.unmodifiableList(new ArrayList<String>(b.plugins));
+    pluginOptions = Collections.unmodifiableMap(new HashMap<String, String>(b.pluginOptions));
+  }
+
+  /**
+  * Obtain the starting URL.
+  * @return Starting URL.
+  */
+  public String getUrl(){
+    return url;
+  }
+
+  /**
+  * Obtain the number of worker threads.
+  * @return Number of threads.
+  */
+  public int getThreads(){
+    return threads;
+  }
+
+  /**
+  * Obtain the read timeout.
+  * @return Timeout in milliseconds.
+  */
+  public int getTimeout(){
+    return timeout;
+  }
+
+  /**
+  * Obtain the max number of pages to parse.
+  * @return Max number of pages.
+  */
+  public int getMax(){
+    return max;
+  }
+
+  /**
+  * Obtain the max number of body bytes to download.
+  * @return Max number of bytes, 0 for no limit.
+  */
+  public long getMaxBytes(){
+    return maxBytes;
+  }
+
+  /**
+  * Obtain the wall-clock time limit of the crawl.
+  * @return Time limit in milliseconds, 0 for no limit.
+  */
+  public long getTimeLimit(){
+    return timeLimit;
+  }
+
+  /**
+  * Obtain the web page extensions added to the defaults.
+  * @return List of extensions.
+  */
+  public List<String> getExts(){
+    return exts;
+  }
+
+  /**
+  * Obtain the keywords of URLs not to open.
+  * @return List of keywords.
+  */
+  public List<String> getIgnore(){
+    return ignore;
+  }
+
+  /**
+  * Check if URLs outside the base URL's domain are followed.
+  * @return {@code true/false}.
+  */
+  public boolean isFollowExternal(){
+    return followExternal;
+  }
+
+  /**
+  * Check if external URLs are hidden from the output.
+  * @return {@code true/false}.
+  */
+  public boolean isHideExternal(){
+    return hideExternal;
+  }
+
+  /**
+  * Obtain the request headers.
+  * @return Map of headers.
+  */
+  public Map<String, String> getHeaders(){
+    return headers;
+  }
+
+  /**
+  * Obtain the request cookies.
+  * @return Map of cookies.
+  */
+  public Map<String, String> getCookies(){
+    return cookies;
+  }
+
+  /**
+  * Obtain the proxy host.
+  * @return Proxy host, {@code null} for a direct connection.
+  */
+  public String getProxyHost(){
+    return proxyHost;
+  }
+
+  /**
+  * Obtain the proxy port.
+  * @return Proxy port.
+  */
+  public int getProxyPort(){
+    return proxyPort;
+  }
+
+  /**
+  * Check if adaptive concurrency control is enabled.
+  * @return {@code true/false}.
+  */
+  public boolean isAdaptive(){
+    return adaptive;
+  }
+
+  /**
+  * Obtain the max number of threads in adaptive mode.
+  * @return Max threads, 0 for the default.
+  */
+  public int getMaxThreads(){
+    return maxThreads;
+  }
+
+  /**
+  * Obtain the max number of retries of transient fetch failures.
+  * @return Max retries.
+  */
+  public int getMaxRetries(){
+    return maxRetries;
+  }
+
+  /**
+  * Obtain the number of consecutive failures that open a host's circuit.
+  * @return Failure threshold.
+  */
+  public int getBreakerThreshold(){
+    return breakerThreshold;
+  }
+
+  /**
+  * Obtain the max number of body bytes read per page.
+  * @return Max body size, 0 for no limit.
+  */
+  public int getMaxBodySize(){
+    return maxBodySize;
+  }
+
+  /**
+  * Obtain the content types of pages to parse.
+  * @return List of content types, {@code null} for the defaults.
+  */
+  public List<String> getContentTypes(){
+    return contentTypes;
+  }
+
+  /**
+  * Check if content sniffing is enabled.
+  * @return {@code true/false}.
+  */
+  public boolean isSniff(){
+    return sniff;
+  }
+
+  /**
+  * Obtain the max SimHash distance of near-duplicate pages.
+  * @return Max distance, negative if detection is disabled.
+  */
+  public int getNearDuplicates(){
+    return nearDuplicates;
+  }
+
+  /**
+  * Check if link discovery in scripts is enabled.
+  * @return {@code true/false}.
+  */
+  public boolean isScriptLinks(){
+    return scriptLinks;
+  }
+
+  /**
+  * Check if URL aliases are crawled once.
+  * @return {@code true/false}.
+  */
+  public boolean isCanonicalDedup(){
+    return canonicalDedup;
+  }
+
+  /**
+  * Obtain the number of URLs queued per learned URL template before sampling.
+  * @return Budget per template, 0 if disabled.
+  */
+  public int getTemplateBudget(){
+    return templateBudget;
+  }
+
+  /**
+  * Obtain the fraction of a template's URLs queued once its budget is spent.
+  * @return Sampling rate, 0 to 1.
+  */
+  public double getTemplateSample(){
+    return templateSample;
+  }
+
+  /**
+  * Check if the memory governor is enabled.
+  * @return {@code true/false}.
+  */
+  public boolean isMemoryGuard(){
+    return memoryGuard;
+  }
+
+  /**
+  * Check if interned URLs are kept off the Java heap.
+  * @return {@code true/false}.
+  */
+  public boolean isOffHeap(){
+    return offHeap;
+  }
+
+  /**
+  * Obtain the names of plugins to load.
+  * @return List of plugin names.
+  */
+  public List<String> getPlugins(){
+    return plugins;
+  }
+
+  /**
+  * Obtain the plugin options.
+  * @return Map of option names to values.
+  */
+  public Map<String, String> getPluginOptions(){
+    return pluginOptions;
+  }
+
+  /**
+  * Obtain a builder initialized with this config, to derive a new config from it.
+  * @return A new builder.
+  */
+  public Builder toBuilder(){
+
+    Builder b = new Builder(url);
+    b.threads = threads;
+    b.timeout = timeout;
+    b.max = max;
+    b.maxBytes = maxBytes;
+    b.timeLimit = timeLimit;
+    b.exts.addAll(exts);
+    b.ignore.addAll(ignore);
+    b.followExternal = followExternal;
+    b.hideExternal = hideExternal;
+    b.headers.putAll(headers);
+    b.cookies.putAll(cookies);
+    b.proxyHost = proxyHost;
+    b.proxyPort = proxyPort;
+    b.adaptive = adaptive;
+    b.maxThreads = maxThreads;
+    b.maxRetries = maxRetries;
+    b.breakerThreshold = breakerThreshold;
+    b.maxBodySize = maxBodySize;
+    b.contentTypes = (contentTypes == null ? null : new ArrayList<String>(contentTypes));
+    b.sniff = sniff;
+    b.nearDuplicates = nearDuplicates;
+    b.scriptLinks = scriptLinks;
+    b.canonicalDedup = canonicalDedup;
+    b.templateBudget = templateBudget;
+    b.templateSample = templateSample;
+    b.memoryGuard = memoryGuard;
+    b.offHeap = offHeap;
+    b.plugins.addAll(plugins);
+    b.pluginOptions.putAll(pluginOptions);
+    return b;
+  }
+
+  /**
+  * Builder of {@link CrawlConfig}.
+  */
+  public static class Builder{
+
+    private String url;
+    private int threads = 5;
+    private int timeout = 5000;
+    private int max = 100;
+    private long maxBytes = 0;
+    private long timeLimit = 0;
+    private ArrayList<String> exts = new ArrayList<String>();
+    private ArrayList<String> ignore = new ArrayList<String>();
+    private boolean followExternal = false;
+    private boolean hideExternal = false;
+    private HashMap<String, String> headers = new HashMap<String, String>();
+    private HashMap<String, String> cookies = new HashMap<String, String>();
+    private String proxyHost = null;
+    private int proxyPort = 0;
+    private boolean adaptive = false;
+    private int maxThreads = 0;
+    private int maxRetries = 2;
+    private int breakerThreshold = 5;
+    private int maxBodySize = 2 * 1024 * 1024;
+    private ArrayList<String> contentTypes = null;
+    private boolean sniff = false;
+    private int nearDuplicates = -1;
+    private boolean scriptLinks = false;
+    private boolean canonicalDedup = false;
+    private int templateBudget = 0;
+    private double templateSample = 0.1;
+    private boolean memoryGuard = false;
+    private boolean offHeap = false;
+    private ArrayList<String> plugins = new ArrayList<String>();
+    private HashMap<String, String> pluginOptions = new HashMap<String, String>();
+
+    /**
+    * Builder's constructor.
+    * @param url Starting URL.
+    */
+    public Builder(String url){
+      this.url = url;
+    }
+
+    /**
+    * Set the number of worker threads. Default is 5.
+    * @param threads Number of threads.
+    * @return This builder.
+    */
+    public Builder threads(int threads){
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+    * Set the read timeout. Default is 5000.
+    * @param timeout Timeout in milliseconds.
+    * @return This builder.
+    */
+    public Builder timeout(int timeout){
+      this.timeout = timeout;
+      return this;
+    }
+
+    /**
+    * Set the max number of pages to parse. Default is 100.
+    * @param max Max number of pages.
+    * @return This builder.
+    */
+    public Builder max(int max){
+      this.max = max;
+      return this;
+    }
+
+    /**
+    * Set the max number of body bytes to download. Default is 0, for no limit.
+    * @param maxBytes Max number of bytes.
+    * @return This builder.
+    */
+    public Builder maxBytes(long maxBytes){
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+    * Set the wall-clock time limit of the crawl. Default is 0, for no limit.
+    * @param timeLimit Time limit in milliseconds.
+    * @return This builder.
+    */
+    public Builder timeLimit(long timeLimit){
+      this.timeLimit = timeLimit;
+      return this;
+    }
+
+    /**
+    * Add web page extensions to the defaults.
+    * @param exts Extensions to add.
+    * @return This builder.
+    */
+    public Builder exts(String... exts){
+      this.exts.addAll(Arrays.asList(exts));
+      return this;
+    }
+
+    /**
+    * Add keywords of URLs not to open.
+    * @param keywords Keywords, matched case-insensitively.
+    * @return This builder.
+    */
+    public Builder ignore(String... keywords){
+      ignore.addAll(Arrays.asList(keywords));
+      return this;
+    }
+
+    /**
+    * Follow URLs outside the base URL's domain.
+    * @param flag {@code true/false}.
+    * @return This builder.
+    */
+    public Builder followExternal(boolean flag){
+      followExternal = flag;
+      return this;
+    }
+
+    /**
+    * Hide external URLs from the output.
+    * @param flag {@code true/false}.
+    * @return This builder.
+    */
+    public Builder hideExternal(boolean flag){
+      hideExternal = flag;
+      return this;
+    }
+
+    /**
+    * Add a request header.
+    * @param name Header name.
+    * @param value Header value.
+    * @return This builder.
+    */
+    public Builder header(String name, String value){
+      headers.put(name, value);
+      return this;
+    }
+
+    /**
+    * Add request headers.
+    * @param headers Map of headers.
+    * @return This builder.
+    */
+    public Builder headers(Map<String, String> headers){
+      this.headers.putAll(headers);
+      return this;
+    }
+
+    /**
+    * Add a request cookie.
+    * @param name Cookie name.
+    * @param value Cookie value.
+    * @return This builder.
+    */
+    public Builder cookie(String name, String value){
+      cookies.put(name, value);
+      return this;
+    }
+
+    /**
+    * Add request cookies.
+    * @param cookies Map of cookies.
+    * @return This builder.
+    */
+    public Builder cookies(Map<String, String> cookies){
+      this.cookies.putAll(cookies);
+      return this;
+    }
+
+    /**
+    * Set an HTTP proxy.
+    * @param host Proxy host.
+    * @param port Proxy port.
+    * @return This builder.
+    */
+    public Builder proxy(String host, int port){
+      proxyHost = host;
+      proxyPort = port;
+      return this;
+    }
+
+    /**
+    * Enable adaptive concurrency control.
+    * @param flag {@code true/false}.
+    * @return This builder.
+    */
+    public Builder adaptive(boolean flag){
+      adaptive = flag;
+      return this;
+    }
+
+    /**
+    * Set the max number of threads in adaptive mode. Default is 4 times the threads.
+    * @param maxThreads Max threads.
+    * @return This builder.
+    */
+    public Builder maxThreads(int maxThreads){
+      this.maxThreads = maxThreads;
+      return this;
+    }
+
+    /**
+    * Set the max number of retries of transient fetch failures. Default is 2.
+    * @param maxRetries Max retries.
+    * @return This builder.
+    */
+    public Builder maxRetries(int maxRetries){
+      this.maxRetries = maxRetries;
+      return this;
+    }
+
+    /**
+    * Set the number of consecutive failures that open a host's circuit. Default is 5.
+    * @param threshold Failure threshold.
+    * @return This builder.
+    */
+    public Builder breakerThreshold(int threshold){
+      breakerThreshold = threshold;
+      return this;
+    }
+
+    /**
+    * Set the max number of body bytes read per page. Default is 2 MB.
+    * @param maxBodySize Max body size, 0 for no limit.
+    * @return This builder.
+    */
+    public Builder maxBodySize(int maxBodySize){
+      this.maxBodySize = maxBodySize;
+      return this;
+    }
+
+    /**
+    * Set the content types of pages to parse. Defaults to HTML and XHTML.
+    * @param types Content types, none to accept all.
+    * @return This builder.
+    */
+    public Builder contentTypes(String... types){
+      contentTypes = new ArrayList<String>(Arrays.asList(types));
+      return this;
+    }
+
+    /**
+    * Enable content sniffing.
+    * @param flag {@code true/false}.
+    * @return This builder.
+    */
+    public Builder sniff(boolean flag){
+      sniff = flag;
+      return this;
+    }
+
+    /**
+    * Enable near-duplicate page detection.
+    * @param maxDistance Max SimHash distance (at most 3), negative to disable.
+    * @return This builder.
+    */
+    public Builder nearDuplicates(int maxDistance){
+      nearDuplicates = maxDistance;
+      return this;
+    }
+
+    /**
+    * Enable link discovery in scripts and JSON responses.
+    * @param flag {@code true/false}.
+    * @return This builder.
+    */
+    public Builder scriptLinks(boolean flag){
+      scriptLinks = flag;
+      return this;
+    }
+
+    /**
+    * Crawl URLs differing by scheme, "www.", default port or trailing slash, and known redirects, once. Default is false.
+    * @param flag {@code true/false}.
+    * @return This builder.
+    */
+    public Builder canonicalDedup(boolean flag){
+      canonicalDedup = flag;
+      return this;
+    }
+
+    /**
+    * Set the per-template crawl budget. Default is 0, for no limit.
+    * @param budget URLs queued per learned URL template before sampling.
+    * @param sample Fraction of a template's URLs queued once its budget is spent, 0 to 1. Default is 0.1.
+    * @return This builder.
+    */
+    public Builder templateBudget(int budget, double sample){
+      templateBudget = budget;
+      templateSample = sample;
+      return this;
+    }
+
+    /**
+    * Watch the heap and degrade gracefully under memory pressure. Default is false.
+    * @param flag {@code true/false}.
+    * @return This builder.
+    */
+    public Builder memoryGuard(boolean flag){
+      memoryGuard = flag;
+      return this;
+    }
+
+    /**
+    * Keep interned URLs off the Java heap.
+    * @param flag {@code true/false}.
+    * @return This builder.
+    */
+    public Builder offHeap(boolean flag){
+      offHeap = flag;
+      return this;
+    }
+
+    /**
+    * Add plugins to load.
+    * @param names Plugin names.
+    * @return This builder.
+    */
+    public Builder plugins(String... names){
+      plugins.addAll(Arrays.asList(names));
+      return this;
+    }
+
+    /**
+    * Set a plugin option.
+    * @param name Option name (case-insensitive).
+    * @param value Option value.
+    * @return This builder.
+    */
+    public Builder pluginOption(String name, String value){
+      pluginOptions.put(name.toLowerCase(), value);
+      return this;
+    }
+
+    /**
+    * Validate the settings and build the config.
+    * @return The config.
+    * @throws IllegalArgumentException on an invalid URL or setting.
+    */
+    public CrawlConfig build(){
+
+      try{
+        new URL(url);
+      }catch(MalformedURLException e){
+        throw new IllegalArgumentException("Invalid URL: " + url, e);
+      }
+      if (threads < 1)
+        throw new IllegalArgumentException("Invalid number of threads: " + threads);
+      if (templateSample < 0 || templateSample > 1)
+        throw new IllegalArgumentException("Invalid template sampling rate: " + templateSample);
+      if (proxyHost != null && (proxyPort < 1 || proxyPort > 65535))
+        throw new IllegalArgumentException("Invalid proxy port: " + proxyPort);
+      return new CrawlConfig(this);
+    }
+  }
+}
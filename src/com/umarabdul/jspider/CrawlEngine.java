@@ -0,0 +1,143 @@
+package com.umarabdul.jspider;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+* Runs many crawls concurrently in one JVM. Every crawl gets its own JSpider instance, so URL stores,
+* queues and plugins are never shared, while worker threads come from one pool owned by the engine.
+* Threads are reused by crawls started after earlier ones finish, instead of each crawl spawning its own.
+* Host lookups go through one {@link DnsCache}, and HTTP connections are kept alive in the JVM-wide
+* connection cache of {@code HttpURLConnection}, so crawls of the same host reuse each other's connections.
+* That cache keeps 5 idle connections per host by default. Applications running many workers against a host
+* should raise it with the {@code http.maxConnections} system property, set before the first connection is
+* made; JSpider leaves JVM-wide properties to the caller.
+*
+* <pre>
+* CrawlEngine engine = new CrawlEngine();
+* engine.submit(new CrawlConfig.Builder("https://example.com/").build())
+*       .thenAccept(spider -&gt; System.out.println(spider.getURLCount()));
+* </pre>
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class CrawlEngine implements Closeable{
+
+  private ExecutorService pool; // Runs the workers of all crawls.
+  private boolean ownPool; // Shut the pool down on close.
+  private Set<JSpider> running; // Crawls started and not completed.
+  private DnsCache dnsCache; // Shared by all crawls.
+
+  /**
+  * Create an engine with its own pool of daemon threads, grown on demand.
+  */
+  public CrawlEngine(){
+
+    this(Executors.newCachedThreadPool(new ThreadFactory(){
+      private AtomicInteger count = new AtomicInteger(0);
+      @Override
+      public Thread newThread(Runnable r){
+        Thread t = new Thread(r, "JSpider-engine-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    }));
+    ownPool = true;
+  }
+
+  /**
+  * Create an engine running crawls on the given pool. The pool must be able to run the workers of all
+  * concurrent crawls at once, since each worker runs until its crawl is over.
+  * @param pool Pool to run the workers on, not shut down by {@code close()}.
+  */
+  public CrawlEngine(ExecutorService pool){
+
+    this.pool = pool;
+    ownPool = false;
+    running = ConcurrentHashMap.newKeySet();
+    dnsCache = new DnsCache();
+  }
+
+  /**
+  * Start a crawl. The returned future completes with the spider once its workers and plugins have finished,
+  * and exceptionally if the crawl can't be started. Cancelling the future kills the crawl.
+  * @param config Crawl config.
+  * @return Completion handle of the crawl.
+  */
+  public CompletableFuture<JSpider> submit(CrawlConfig config){
+
+    CompletableFuture<JSpider> result = new CompletableFuture<JSpider>();
+    pool.execute(() -> {
+      if (result.isCancelled())
+        return;
+      JSpider spider = null;
+      try{
+        spider = new JSpider(config);
+      }catch(Exception e){
+        result.completeExceptionally(e);
+        return;
+      }
+      spider.setExecutor(pool);
+      spider.setDnsCache(dnsCache);
+      running.add(spider);
+      final JSpider crawl = spider;
+      if (!(spider.start(false))){
+        running.remove(spider);
+        ArrayList<String> status = spider.getStatusQueue();
+        result.completeExceptionally(new IllegalStateException(String.format("Crawl of %s not started: %s", config.getUrl(), (status.isEmpty() ? "unknown error" : status.get(status.size() - 1)))));
+        return;
+      }
+      // Hooked once started, so a cancel that came in during start() still kills the crawl (the hook runs at once).
+      // Its plugins may never finish, so the crawl is forgotten without waiting for them.
+      result.whenComplete((s, e) -> {
+        if (result.isCancelled()){
+          pool.execute(() -> {
+            crawl.kill();
+            running.remove(crawl);
+          });
+        }
+      });
+      spider.getCompletion().thenRunAsync(() -> {
+        crawl.awaitPlugins(0);
+        running.remove(crawl);
+        result.complete(crawl);
+      }, pool);
+    });
+    return result;
+  }
+
+  /**
+  * Obtain the DNS cache shared by the engine's crawls.
+  * @return DNS cache.
+  */
+  public DnsCache getDnsCache(){
+    return dnsCache;
+  }
+
+  /**
+  * Obtain the number of crawls currently running.
+  * @return Number of crawls.
+  */
+  public int getRunningCount(){
+    return running.size();
+  }
+
+  /**
+  * Kill all running crawls, and shut the pool down if owned by the engine.
+  */
+  @Override
+  public void close(){
+
+    for (JSpider spider : running)
+      spider.kill();
+    running.clear();
+    if (ownPool)
+      pool.shutdown();
+  }
+}
@@ -0,0 +1,130 @@
+package com.umarabdul.jspider;
+
+
+/**
+* Outcome of one fetch of a crawl, as persisted by {@link ResultStore}.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class CrawlRecord{
+
+  private String url;
+  private String parent; // URL of the page the URL was found on, empty for the base URL.
+  private String contentType;
+  private String error; // Fetch error, empty on success.
+  private long timestamp; // Time of the fetch, in milliseconds since the epoch.
+  private int status; // HTTP status code, 0 if no response.
+  private int size; // Bytes of body read.
+  private int latency; // Time taken to fetch and parse, in milliseconds.
+  private int depth; // Links followed from the base URL.
+
+  /**
+  * CrawlRecord's constructor.
+  * @param url URL fetched.
+  * @param parent URL of the page the URL was found on, empty for the base URL.
+  * @param contentType Content type of the response, empty if none.
+  * @param error Fetch error, empty on success.
+  * @param timestamp Time of the fetch, in milliseconds since the epoch.
+  * @param status HTTP status code, 0 if no response.
+  * @param size Bytes of body read.
+  * @param latency Time taken to fetch and parse, in milliseconds.
+  * @param depth Links followed from the base URL.
+  */
+  public CrawlRecord(String url, String parent, String contentType, String error, long timestamp, int status, int size, int latency, int depth){
+
+    this.url = url;
+    this.parent = (parent == null ? "" : parent);
+    this.contentType = (contentType == null ? "" : contentType);
+    this.error = (error == null ? "" : error);
+    this.timestamp = timestamp;
+    this.status = status;
+    this.size = size;
+    this.latency = latency;
+    this.depth = depth;
+  }
+
+  /**
+  * Obtain the URL fetched.
+  * @return The URL.
+  */
+  public String getURL(){
+    return url;
+  }
+
+  /**
+  * Obtain the URL of the page the URL was found on.
+  * @return Parent URL, empty for the base URL.
+  */
+  public String getParent(){
+    return parent;
+  }
+
+  /**
+  * Obtain the content type of the response.
+  * @return Content type, empty if none.
+  */
+  public String getContentType(){
+    return contentType;
+  }
+
+  /**
+  * Obtain the fetch error.
+  * @return Error message, empty on success.
+  */
+  public String getError(){
+    return error;
+  }
+
+  /**
+  * Obtain the time of the fetch.
+  * @return Milliseconds since the epoch.
+  */
+  public long getTimestamp(){
+    return timestamp;
+  }
+
+  /**
+  * Obtain the HTTP status code.
+  * @return Status code, 0 if no response.
+  */
+  public int getStatus(){
+    return status;
+  }
+
+  /**
+  * Obtain the number of body bytes read.
+  * @return Body size.
+  */
+  public int getSize(){
+    return size;
+  }
+
+  /**
+  * Obtain the time taken to fetch and parse.
+  * @return Latency in milliseconds.
+  */
+  public int getLatency(){
+    return latency;
+  }
+
+  /**
+  * Obtain the number of links followed from the base URL.
+  * @return Depth.
+  */
+  public int getDepth(){
+    return depth;
+  }
+
+  /**
+  * Format the record as a tab-separated line: status, content type, size, latency, depth, timestamp, URL, parent, error.
+  * @return The record as text.
+  */
+  @Override
+  public String toString(){
+    return String.join("\t", String.valueOf(status), contentType, String.valueOf(size), String.valueOf(latency),
+                       String.valueOf(depth), String.valueOf(timestamp), url, parent, error);
+  }
+}
@@ -0,0 +1,221 @@
+package com.umarabdul.jspider;
+
+import java.net.*;
+import java.security.Security;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.regex.Pattern;
+
+
+/**
+* Caches host name lookups for JSpider's workers, with a TTL for resolved hosts and a shorter one for
+* hosts that failed to resolve. Hosts are resolved in the background as soon as their URLs are queued,
+* so the lookup is off the critical path by the time a worker fetches them, and URLs of hosts known not to
+* resolve fail at once instead of each waiting for a lookup.
+* <p>
+* Java 11 has no pluggable resolver for {@code HttpURLConnection}, which still calls {@code InetAddress} itself.
+* Prefetching through {@code InetAddress} fills the JVM's own address cache ({@code networkaddress.cache.ttl},
+* 30 seconds by default), which is what makes the worker's lookup free. This cache decides when to refresh
+* and remembers failures, so its TTLs are capped at the JVM's ({@code networkaddress.cache.ttl} and
+* {@code networkaddress.cache.negative.ttl}): a host it holds fresh is also in the JVM's cache.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class DnsCache{
+
+  private static final int MAX_ENTRIES = 100000;
+  private static final Pattern IP_LITERAL = Pattern.compile("[0-9.]+");
+
+  private long ttl; // Lifetime of resolved entries, in milliseconds.
+  private long negativeTtl; // Lifetime of failed entries, in milliseconds.
+  private ConcurrentHashMap<String, Entry> entries;
+  private Set<String> pending; // Hosts being prefetched.
+  private ThreadPoolExecutor prefetcher;
+  private AtomicLong hits = new AtomicLong(0);
+  private AtomicLong misses = new AtomicLong(0);
+  private AtomicLong failures = new AtomicLong(0);
+
+  /**
+  * Create a cache keeping resolved hosts for 5 minutes and failures for 30 seconds, or less if the JVM caches them for less.
+  */
+  public DnsCache(){
+    this(300000, 30000);
+  }
+
+  /**
+  * DnsCache's constructor.
+  * @param ttl Lifetime of resolved entries, in milliseconds, capped at the JVM's.
+  * @param negativeTtl Lifetime of failed entries, in milliseconds, capped at the JVM's.
+  */
+  public DnsCache(long ttl, long negativeTtl){
+
+    this.ttl = Math.min(ttl, jvmTtl("networkaddress.cache.ttl", "sun.net.inetaddr.ttl", 30000));
+    this.negativeTtl = Math.min(negativeTtl, jvmTtl("networkaddress.cache.negative.ttl", "sun.net.inetaddr.negative.ttl", 10000));
+    entries = new ConcurrentHashMap<String, Entry>();
+    pending = ConcurrentHashMap.newKeySet();
+    prefetcher = new ThreadPoolExecutor(4, 4, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(4096), (r) -> {
+      Thread t = new Thread(r, "JSpider-dns");
+      t.setDaemon(true);
+      return t;
+    }, new ThreadPoolExecutor.DiscardPolicy());
+    prefetcher.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+  * Obtain a lifetime of the JVM's address cache, from its security property or the legacy system property.
+  * @return Lifetime in milliseconds, {@code Long.MAX_VALUE} if forever.
+  */
+  private static long jvmTtl(String property, String legacy, long fallback){
+
+    String value = Security.getProperty(property);
+    if (value == null)
+      value = System.getProperty(legacy);
+    if (value == null)
+      return fallback;
+    try{
+      long seconds = Long.parseLong(value.trim());
+      return (seconds < 0 ? Long.MAX_VALUE : seconds * 1000);
+    }catch(NumberFormatException e){
+      return fallback;
+    }
+  }
+
+  /**
+  * Resolve a host, from the cache if fresh.
+  * @param host Host name.
+  * @return Addresses of the host.
+  * @throws UnknownHostException if the host does not resolve, now or within the negative TTL.
+  */
+  public InetAddress[] resolve(String host) throws UnknownHostException{
+
+    host = host.toLowerCase();
+    Entry entry = entries.get(host);
+    long now = System.currentTimeMillis();
+    if (entry != null && entry.expires > now){
+      hits.incrementAndGet();
+      if (entry.addresses == null)
+        throw new UnknownHostException(host + " (cached)");
+      return entry.addresses;
+    }
+    misses.incrementAndGet();
+    return lookup(host);
+  }
+
+  private InetAddress[] lookup(String host) throws UnknownHostException{
+
+    if (entries.size() >= MAX_ENTRIES)
+      evictExpired();
+    long now = System.currentTimeMillis();
+    try{
+      InetAddress[] addresses = InetAddress.getAllByName(host);
+      entries.put(host, new Entry(addresses, now + ttl));
+      return addresses;
+    }catch(UnknownHostException e){
+      failures.incrementAndGet();
+      entries.put(host, new Entry(null, now + negativeTtl));
+      throw e;
+    }
+  }
+
+  /**
+  * Check if a host failed to resolve within the negative TTL. Never blocks.
+  * @param host Host name.
+  * @return {@code true} if the host is known not to resolve.
+  */
+  public boolean isUnresolvable(String host){
+
+    Entry entry = entries.get(host.toLowerCase());
+    return (entry != null && entry.addresses == null && entry.expires > System.currentTimeMillis());
+  }
+
+  /**
+  * Resolve a host in the background, unless it has a fresh entry or is already being resolved.
+  * IP literals are ignored, and nothing is prefetched if the JVM does not cache addresses.
+  * @param host Host name.
+  */
+  public void prefetch(String host){
+
+    if (ttl <= 0 || host.length() == 0)
+      return;
+    String key = host.toLowerCase();
+    Entry entry = entries.get(key);
+    if (entry != null && entry.expires > System.currentTimeMillis())
+      return;
+    if (host.indexOf(':') != -1 || IP_LITERAL.matcher(host).matches() || !(pending.add(key)))
+      return;
+    try{
+      prefetcher.execute(() -> {
+        try{
+          lookup(key);
+        }catch(UnknownHostException ignored){
+        }finally{
+          pending.remove(key);
+        }
+      });
+    }catch(RejectedExecutionException e){
+      pending.remove(key);
+    }
+  }
+
+  private void evictExpired(){
+
+    long now = System.currentTimeMillis();
+    entries.values().removeIf(e -> e.expires <= now);
+    if (entries.size() >= MAX_ENTRIES)
+      entries.clear();
+  }
+
+  /**
+  * Obtain the number of cached hosts, resolved or not.
+  * @return Number of hosts.
+  */
+  public int size(){
+    return entries.size();
+  }
+
+  /**
+  * Obtain the number of lookups answered from the cache.
+  * @return Number of hits.
+  */
+  public long getHits(){
+    return hits.get();
+  }
+
+  /**
+  * Obtain the number of lookups that went to the resolver.
+  * @return Number of misses.
+  */
+  public long getMisses(){
+    return misses.get();
+  }
+
+  /**
+  * Obtain the number of failed resolutions, prefetches included.
+  * @return Number of failures.
+  */
+  public long getFailures(){
+    return failures.get();
+  }
+
+  /**
+  * Remove all entries.
+  */
+  public void clear(){
+    entries.clear();
+  }
+
+  private static class Entry{
+
+    private InetAddress[] addresses; // null for hosts that failed to resolve.
+    private long expires;
+
+    Entry(InetAddress[] addresses, long expires){
+      this.addresses = addresses;
+      this.expires = expires;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.umarabdul.jspider;
+
+
+/**
+* Thrown by {@link PageFetcher} when a page could not be fetched.
+* Carries the kind of failure so callers can tell congestion signals (timeouts, 429s, 5xxs)
+* apart from errors that say nothing about the server's load.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class FetchException extends Exception{
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+  * Kinds of fetch failures.
+  */
+  public enum Kind{
+    TIMEOUT, // Connect or read timeout.
+    DNS, // Host name could not be resolved.
+    CONNECT, // Connection refused, or no route to host.
+    HTTP, // HTTP error status, see getStatusCode().
+    CONTENT, // Response is not a page JSpider can parse, e.g. too large.
+    TYPE, // Response is not of an accepted content type, or its body looks binary.
+    IO // Any other I/O error.
+  }
+
+  private Kind kind;
+  private int statusCode;
+
+  /**
+  * FetchException's constructor.
+  * @param kind Kind of failure.
+  * @param statusCode HTTP status code, 0 if no response was received.
+  * @param msg Error message.
+  */
+  public FetchException(Kind kind, int statusCode, String msg){
+
+    super(msg);
+    this.kind = kind;
+    this.statusCode = statusCode;
+  }
+
+  /**
+  * Obtain the kind of failure.
+  * @return Kind of failure.
+  */
+  public Kind getKind(){
+    return kind;
+  }
+
+  /**
+  * Obtain the HTTP status code of the response.
+  * @return Status code, 0 if no response was received.
+  */
+  public int getStatusCode(){
+    return statusCode;
+  }
+
+  /**
+  * Check if the failure suggests the server is overloaded and the request rate should drop.
+  * @return {@code true} for timeouts, connection failures, 429s and 5xxs.
+  */
+  public boolean isCongestion(){
+    return (kind == Kind.TIMEOUT || kind == Kind.CONNECT || (kind == Kind.HTTP && (statusCode == 429 || statusCode >= 500)));
+  }
+}
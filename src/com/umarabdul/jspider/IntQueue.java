@@ -0,0 +1,237 @@
+package com.umarabdul.jspider;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+
+
+/**
+* A growable FIFO ring buffer of primitive ints, used for queues of URL IDs.
+* Under memory pressure, all but the head of the queue can be spilled to a temporary file. Items then
+* flow from the in-memory head, through the file, to an in-memory tail buffer flushed to the file when full,
+* and the head is refilled from the file a chunk at a time. Once the file is drained the queue is in memory again.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+class IntQueue{
+
+  private static final int CHUNK = 4096; // Items moved between memory and the spill file at once.
+
+  private int[] items;
+  private int head; // Index of the first item.
+  private int size; // Items in the ring buffer.
+  private FileChannel spill; // Spill file, null if not spilled.
+  private Path spillPath;
+  private long readPos; // Byte position of the next spilled item.
+  private long writePos; // Byte position after the last spilled item.
+  private int[] tail; // Items added after the spilled ones, not yet written.
+  private int tailSize;
+
+  IntQueue(){
+    items = new int[256];
+    head = 0;
+    size = 0;
+  }
+
+  int size(){
+    return size + getSpilled() + tailSize;
+  }
+
+  boolean isEmpty(){
+    return size() == 0;
+  }
+
+  /**
+  * Obtain the number of items in the spill file.
+  */
+  int getSpilled(){
+    return (int)((writePos - readPos) / 4);
+  }
+
+  void add(int value){
+
+    if (spill != null){
+      if (tailSize < tail.length || flushTail()){
+        tail[tailSize++] = value;
+        return;
+      }
+      // The spill file failed, the queue is back in memory.
+    }
+    if (size == items.length){
+      int[] grown = new int[items.length * 2];
+      for (int i = 0; i < size; i++)
+        grown[i] = items[(head + i) % items.length];
+      items = grown;
+      head = 0;
+    }
+    items[(head + size) % items.length] = value;
+    size++;
+  }
+
+  /**
+  * Remove and return the first item. The queue must not be empty.
+  */
+  int poll(){
+
+    if (size == 0 && spill != null)
+      refill();
+    if (size == 0)
+      throw new IllegalStateException("Queue is empty");
+    int value = items[head];
+    head = (head + 1) % items.length;
+    size--;
+    return value;
+  }
+
+  void clear(){
+
+    head = 0;
+    size = 0;
+    closeSpill();
+  }
+
+  /**
+  * Move all but the first {@code keep} items to a temporary file, shrinking the ring buffer.
+  * Items added later are spilled too, until the file is drained by polling. On a queue already spilled,
+  * only the tail buffer is written: the in-memory head, at most a chunk, stays where it is.
+  * @param keep Items to keep in memory.
+  * @return Number of items spilled, 0 if the file could not be written.
+  */
+  int spill(int keep){
+
+    keep = Math.max(keep, 1);
+    if (spill != null){
+      int pending = tailSize;
+      return (flushTail() ? pending : 0);
+    }
+    if (size <= keep)
+      return 0;
+    try{
+      spillPath = Files.createTempFile("jspider-queue-", ".bin");
+      spill = FileChannel.open(spillPath, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+      readPos = writePos = 0;
+      tail = new int[CHUNK];
+      tailSize = 0;
+      int moved = size - keep;
+      int[] rest = new int[moved];
+      for (int i = 0; i < moved; i++)
+        rest[i] = items[(head + keep + i) % items.length];
+      write(rest, moved);
+      int[] kept = new int[Math.max(keep, 256)];
+      for (int i = 0; i < keep; i++)
+        kept[i] = items[(head + i) % items.length];
+      items = kept;
+      head = 0;
+      size = keep;
+      return moved;
+    }catch(IOException e){
+      closeSpill();
+      return 0;
+    }
+  }
+
+  /**
+  * Write the tail buffer to the spill file.
+  * @return {@code false} if the file could not be written, the queue is then back in memory.
+  */
+  private boolean flushTail(){
+
+    try{
+      write(tail, tailSize);
+      tailSize = 0;
+      return true;
+    }catch(IOException e){
+      unspill();
+      return false;
+    }
+  }
+
+  private void write(int[] values, int count) throws IOException{
+
+    ByteBuffer buf = ByteBuffer.allocate(count * 4);
+    buf.asIntBuffer().put(values, 0, count);
+    while (buf.hasRemaining())
+      writePos += spill.write(buf, writePos);
+  }
+
+  private int[] read(int count) throws IOException{
+
+    ByteBuffer buf = ByteBuffer.allocate(count * 4);
+    while (buf.hasRemaining()){
+      int n = spill.read(buf, readPos + buf.position());
+      if (n == -1)
+        throw new EOFException("Spill file truncated");
+    }
+    readPos += count * 4L;
+    buf.flip();
+    int[] values = new int[count];
+    buf.asIntBuffer().get(values);
+    return values;
+  }
+
+  private int[] readAll() throws IOException{
+    return read(getSpilled());
+  }
+
+  /**
+  * Load the next chunk of spilled items, or the tail buffer once the file is drained.
+  */
+  private void refill(){
+
+    int[] values;
+    try{
+      values = read(Math.min(getSpilled(), CHUNK));
+    }catch(IOException e){
+      values = new int[0]; // Spilled items lost, keep the tail.
+      readPos = writePos;
+    }
+    if (values.length == 0){
+      values = Arrays.copyOf(tail, tailSize);
+      closeSpill();
+    }
+    if (items.length < values.length)
+      items = new int[values.length];
+    System.arraycopy(values, 0, items, 0, values.length);
+    head = 0;
+    size = values.length;
+  }
+
+  /**
+  * Load the whole spill file back in memory, e.g. after a write failure.
+  */
+  private void unspill(){
+
+    int[] spilled;
+    try{
+      spilled = readAll();
+    }catch(IOException e){
+      spilled = new int[0];
+    }
+    int[] pending = Arrays.copyOf(tail, tailSize);
+    closeSpill();
+    for (int value : spilled)
+      add(value);
+    for (int value : pending)
+      add(value);
+  }
+
+  private void closeSpill(){
+
+    if (spill != null){
+      try{
+        spill.close();
+        Files.deleteIfExists(spillPath);
+      }catch(IOException ignored){}
+    }
+    spill = null;
+    spillPath = null;
+    readPos = writePos = 0;
+    tail = null;
+    tailSize = 0;
+  }
+}
@@ -3,8 +3,13 @@ package com.umarabdul.jspider;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.lang.reflect.Constructor;
+import org.jsoup.nodes.Element;
 import com.umarabdul.jspider.plugin.Plugin;
+import com.umarabdul.jspider.plugin.PluginRunner;
 import com.umarabdul.jbrowser.*;
 import com.umarabdul.argparser.ArgParser;
 
@@ -22,27 +27,77 @@ import com.umarabdul.argparser.ArgParser;
 public class JSpider implements Runnable{
 
   private ArrayList<String> exts; // Page extensions considered to be web pages.
-  private ArrayList<String> crawled; // URLs that have been parsed.
-  private ArrayList<String> urls; // All URLs yielded, used by JSpider to avoid duplicate outputs.
-  private ArrayList<String> inputQueue; // Queue of URLs yet to be parsed.
-  private ArrayList<String> outputQueue; // URLs output queue for use by the invoking code.
+  private UrlStore store; // Interned URLs. All other URL structures hold IDs into it.
+  private UrlList crawled; // URLs that have been parsed.
+  private BitSet seen; // IDs of URLs queued or parsed, used to avoid duplicate targets.
+  private BitSet urls; // IDs of all URLs yielded, used by JSpider to avoid duplicate outputs.
+  private int urlCount; // Number of URLs yielded.
+  private IntQueue inputQueue; // Queue of URL IDs yet to be parsed.
+  private UrlList outputQueue; // URLs output queue for use by the invoking code.
   private ArrayList<String> statusQueue; // Logs/status queue for use by the invoking code.
   private URL baseUrl; // Starting URL.
   private String baseHost; // Hostname of base URL.
   private String[] ignore; // URLs containing these keywords will not be opened.
   private int threads; // Number of threads to run.
   private int workers; // Number of active threads.
+  private int poolSize; // Number of threads wanted, extra threads exit once done with their page.
+  private volatile boolean paused; // Workers wait instead of taking new pages.
   private boolean followExternal; // Control whether external URLs (not in same host with baseUrl) are spidered.
   private boolean hideExternal; // Control whether external URLs are yielded to the invoking code.
-  private int timeout; // URL read timeout.
+  private volatile int timeout; // URL read timeout.
   private HashMap<String, String> headers; // Request headers to pass to JBrowser.
-  private HashMap<String, String> cookies; // Request cookies to pass to JBrowser.
+  private Map<String, String> cookies; // Cookie jar, shared by the workers and updated by responses.
   private HashMap<String, String> proxy; // Proxy host and port to pass to JBrowser.
   private int parsing; // Number of threads that are actively parsing pages. Used to avoid early exit of threads when inputQueue is exhausted, but a page is being parsed.
-  private boolean active; // Set to true when the spider is running.
-  private int max; // Max number of URLs to parse.
+  private volatile boolean active; // Set to true when the spider is running.
+  private volatile int max; // Max number of URLs to parse.
+  private long maxBytes; // Max body bytes to download, 0 for no limit.
+  private long bytes; // Body bytes downloaded.
+  private long timeLimit; // Wall-clock limit of the crawl in milliseconds, 0 for no limit.
+  private long startTime; // Time the workers were started.
+  private boolean budgetSpent; // A byte or time budget ran out, workers are draining.
   private ArrayList<Plugin> plugins; // Plugins to activate.
+  private ArrayList<PluginRunner> runners; // Runtimes of the started plugins.
   private HashMap<String, String> pluginOptions; // Options defined for the plugins.
+  private LinkGraph linkGraph; // Optional recorder of which page linked to which.
+  private boolean adaptive; // Adapt the number of in-flight fetches to observed latency and errors.
+  private int maxThreads; // Upper bound of in-flight fetches in adaptive mode.
+  private ConcurrencyLimiter limiter; // Global in-flight limit, adaptive mode only.
+  private HashMap<String, ConcurrencyLimiter> hostLimiters; // Per host in-flight limits, adaptive mode only.
+  private int maxRetries; // Max retries of a fetch that failed with a transient error.
+  private RetryQueue retries; // Failed URLs waiting for their backoff delay.
+  private int breakerThreshold; // Consecutive failures that open a host's circuit.
+  private HashMap<String, CircuitBreaker> breakers; // Circuit breaker of each host.
+  private HashMap<String, IntQueue> parked; // URLs held while their host's circuit is open.
+  private int parkedCount; // Number of parked URLs.
+  private int maxBodySize; // Max bytes of a page body to read.
+  private String[] contentTypes; // Content types of pages to parse.
+  private boolean sniff; // Decide what to parse by content type instead of extension.
+  private ContentTypeCache typeCache; // Learned content types of URL patterns, sniffing mode only.
+  private int nonPages; // Fetches rejected as non-HTML in sniffing mode, not counted against the page budget.
+  private SimHashIndex nearDups; // Fingerprints of parsed pages, null if near-duplicate detection is disabled.
+  private HashMap<String, int[]> dupPatterns; // URL pattern to {fingerprinted pages, near-duplicates}.
+  private int trapPatterns; // Number of URL patterns deprioritized for producing near-duplicates.
+  private int nearDupCount; // Number of near-duplicate pages found.
+  private IntQueue lowQueue; // URLs of deprioritized patterns, crawled when the input queue is empty.
+  private ScriptLinkExtractor scriptLinks; // Finds links in scripts and JSON, null if disabled.
+  private CanonicalIndex aliases; // Canonical keys of queued and fetched URLs, null if disabled.
+  private int aliasCount; // Number of fetched pages found to be aliases of other pages.
+  private TemplateTrie templates; // Learned URL templates and their budgets, null if disabled.
+  private boolean memoryGuard; // Watch the heap and degrade gracefully under memory pressure.
+  private MemoryGovernor governor; // Heap watcher of the current crawl, null if none.
+  private volatile int memoryLevel; // Last pressure level reported by the governor.
+  private int throttledFrom; // Worker count before the governor halved it, 0 if not throttled.
+  private ArrayList<String> memoryActions; // Responses taken to memory pressure.
+  private ResultStore results; // Store of fetch records, null if none.
+  private int[] origins; // Per URL ID, ID + 1 of the page it was first found on, results store only.
+  private int[] depths; // Per URL ID, links followed from the base URL, results store only.
+  private static final int STATUS_KEEP = 1000; // Status messages kept under memory pressure.
+  private static final int CHUNK_IN_MEMORY = 4096; // Queued URLs kept in memory when spilling.
+  private static final String DEFAULT_USER_AGENT = new JBrowser().getUserAgent(); // Sent unless the headers give one.
+  private Executor executor; // Runs the workers, null to start a thread per worker.
+  private CompletableFuture<JSpider> completion; // Completed when the last worker of a crawl exits.
+  private DnsCache dnsCache; // Resolves queued hosts ahead of their fetch.
 
   /**
   * JSpider's constructor.
@@ -57,27 +112,150 @@ public class JSpider implements Runnable{
     // Extension of URLs to consider as web pages.
     String[] defExts = {"/", ".html", ".htm", ".htmls", ".dhtml", ".xhtml", ".php", ".php3", ".asp", ".aspx", ".ece"};
     addExt(defExts);
-    crawled = new ArrayList<String>();
-    urls = new ArrayList<String>();
-    inputQueue = new ArrayList<String>();
-    outputQueue = new ArrayList<String>();
+    store = new UrlStore();
+    crawled = new UrlList(store);
+    seen = new BitSet();
+    urls = new BitSet();
+    urlCount = 0;
+    inputQueue = new IntQueue();
+    outputQueue = new UrlList(store);
     statusQueue = new ArrayList<String>();
     this.baseUrl = new URL(baseUrl);
     baseHost = this.baseUrl.getHost();
     ignore = new String[0];
     this.threads = Math.max(1, threads);
     workers = 0;
+    poolSize = 0;
+    paused = false;
     followExternal = false;
     hideExternal = false;
     this.timeout = timeout;
     headers = new HashMap<String, String>();
-    cookies = new HashMap<String, String>();
+    headers.put("User-Agent", DEFAULT_USER_AGENT);
+    cookies = new ConcurrentHashMap<String, String>();
     proxy = new HashMap<String, String>();
     parsing = 0;
     active = false;
     max = 100;
+    maxBytes = 0;
+    bytes = 0;
+    timeLimit = 0;
+    startTime = 0;
+    budgetSpent = false;
     plugins = new ArrayList<Plugin>();
+    runners = new ArrayList<PluginRunner>();
     pluginOptions = new HashMap<String, String>();
+    linkGraph = null;
+    adaptive = false;
+    maxThreads = this.threads * 4;
+    limiter = null;
+    hostLimiters = new HashMap<String, ConcurrencyLimiter>();
+    maxRetries = 2;
+    retries = new RetryQueue(1000, 30000);
+    breakerThreshold = 5;
+    breakers = new HashMap<String, CircuitBreaker>();
+    parked = new HashMap<String, IntQueue>();
+    parkedCount = 0;
+    maxBodySize = 2 * 1024 * 1024;
+    contentTypes = new String[]{"text/html", "application/xhtml+xml"};
+    sniff = false;
+    typeCache = new ContentTypeCache();
+    nonPages = 0;
+    nearDups = null;
+    dupPatterns = new HashMap<String, int[]>();
+    trapPatterns = 0;
+    nearDupCount = 0;
+    lowQueue = new IntQueue();
+    scriptLinks = null;
+    aliases = null;
+    aliasCount = 0;
+    templates = null;
+    memoryGuard = false;
+    governor = null;
+    memoryLevel = MemoryGovernor.NORMAL;
+    throttledFrom = 0;
+    memoryActions = new ArrayList<String>();
+    results = null;
+    origins = new int[0];
+    depths = new int[0];
+    executor = null;
+    completion = new CompletableFuture<JSpider>();
+    dnsCache = new DnsCache();
+  }
+
+  /**
+  * Create a spider from an immutable config. The config's plugins are loaded too.
+  * @param config Crawl config.
+  * @throws MalformedURLException on URL parse failure.
+  * @throws IllegalArgumentException if a plugin fails to load.
+  */
+  public JSpider(CrawlConfig config) throws MalformedURLException{
+
+    this(config.getUrl(), config.getThreads(), config.getTimeout());
+    addExt(config.getExts().toArray(new String[0]));
+    setIgnore(config.getIgnore().toArray(new String[0]));
+    setFollowExternal(config.isFollowExternal());
+    setHideExternal(config.isHideExternal());
+    setMax(config.getMax());
+    setMaxBytes(config.getMaxBytes());
+    setTimeLimit(config.getTimeLimit());
+    setHeaders(new HashMap<String, String>(config.getHeaders()));
+    setCookies(new HashMap<String, String>(config.getCookies()));
+    if (config.getProxyHost() != null)
+      setProxy(config.getProxyHost(), config.getProxyPort());
+    setAdaptive(config.isAdaptive());
+    if (config.getMaxThreads() > 0)
+      setMaxThreads(config.getMaxThreads());
+    setMaxRetries(config.getMaxRetries());
+    setBreakerThreshold(config.getBreakerThreshold());
+    setMaxBodySize(config.getMaxBodySize());
+    if (config.getContentTypes() != null)
+      setContentTypes(config.getContentTypes().toArray(new String[0]));
+    setSniff(config.isSniff());
+    setNearDuplicates(config.getNearDuplicates());
+    setScriptLinks(config.isScriptLinks());
+    setCanonicalDedup(config.isCanonicalDedup());
+    setTemplateBudget(config.getTemplateBudget(), config.getTemplateSample());
+    setMemoryGuard(config.isMemoryGuard());
+    setOffHeapURLs(config.isOffHeap());
+    for (Map.Entry<String, String> opt : config.getPluginOptions().entrySet())
+      setPluginOption(opt.getKey(), opt.getValue());
+    if (config.getPlugins().size() > 0 && !(loadPlugins(config.getPlugins().toArray(new String[0]))))
+      throw new IllegalArgumentException("Error loading plugins: " + config.getPlugins());
+  }
+
+  /**
+  * Run the workers on an executor instead of a new thread each, e.g. a pool shared by many spiders.
+  * The executor must be able to run all workers at once, since each one runs until the crawl is over.
+  * @param executor Executor to run the workers on, null to start threads.
+  */
+  public void setExecutor(Executor executor){
+    this.executor = executor;
+  }
+
+  /**
+  * Set the DNS cache, e.g. one shared by many spiders.
+  * @param cache DNS cache to use.
+  */
+  public void setDnsCache(DnsCache cache){
+    dnsCache = cache;
+  }
+
+  /**
+  * Obtain the DNS cache in use.
+  * @return DNS cache.
+  */
+  public DnsCache getDnsCache(){
+    return dnsCache;
+  }
+
+  /**
+  * Obtain a future completed with this spider when the workers of the current crawl have exited.
+  * Plugins may still be processing, see {@code awaitPlugins()}.
+  * @return Completion handle of the current crawl.
+  */
+  public CompletableFuture<JSpider> getCompletion(){
+    return completion;
   }
 
   /**
@@ -119,160 +297,1184 @@ public class JSpider implements Runnable{
   }
 
   /**
-  * Determine whether external URLs are yeilded to the invoking code.
-  * @param flag {@code true/false}.
+  * Determine whether external URLs are yeilded to the invoking code.
+  * @param flag {@code true/false}.
+  */
+  public void setHideExternal(boolean flag){
+    hideExternal = flag;
+  }
+
+  /**
+  * Set max number of pages to parse before aborting. Can be changed while the spider is running.
+  * @param max Max number of pages to parse.
+  */
+  public void setMax(int max){
+    this.max = max;
+  }
+
+  /**
+  * Obtain the max number of pages to parse.
+  * @return Max number of pages.
+  */
+  public int getMax(){
+    return max;
+  }
+
+  /**
+  * Set max number of body bytes to download. Once reached, no new page is fetched and the spider drains.
+  * Can be changed while the spider is running.
+  * @param maxBytes Max number of bytes, 0 for no limit.
+  */
+  public synchronized void setMaxBytes(long maxBytes){
+    this.maxBytes = Math.max(0, maxBytes);
+  }
+
+  /**
+  * Obtain the max number of body bytes to download.
+  * @return Max number of bytes, 0 for no limit.
+  */
+  public synchronized long getMaxBytes(){
+    return maxBytes;
+  }
+
+  /**
+  * Obtain the number of body bytes downloaded by the current crawl.
+  * @return Number of bytes.
+  */
+  public synchronized long getBytes(){
+    return bytes;
+  }
+
+  /**
+  * Set the wall-clock time limit of the crawl, counted from the start of the workers. Once reached, no new page
+  * is fetched and the spider drains. Can be changed while the spider is running.
+  * @param timeLimit Time limit in milliseconds, 0 for no limit.
+  */
+  public synchronized void setTimeLimit(long timeLimit){
+    this.timeLimit = Math.max(0, timeLimit);
+  }
+
+  /**
+  * Obtain the wall-clock time limit of the crawl.
+  * @return Time limit in milliseconds, 0 for no limit.
+  */
+  public synchronized long getTimeLimit(){
+    return timeLimit;
+  }
+
+  /**
+  * Obtain the time elapsed since the workers were started.
+  * @return Elapsed time in milliseconds, 0 if never started.
+  */
+  public synchronized long getElapsed(){
+    return (startTime == 0 ? 0 : System.currentTimeMillis() - startTime);
+  }
+
+  /**
+  * Set read timeout for JBrowser. Can be changed while the spider is running.
+  * @param timeout Read timeout in milliseconds.
+  */
+  public void setTimeout(int timeout){
+    this.timeout = timeout;
+  }
+
+  /**
+  * Enable adaptive concurrency control. The number of in-flight fetches, globally and per host, starts at the
+  * number of threads and is raised while latency stays stable, up to the max number of threads. It is cut on
+  * timeouts, 429s and 5xxs. Read timeouts also follow the observed latency, never exceeding the configured timeout.
+  * @param flag {@code true/false}.
+  */
+  public void setAdaptive(boolean flag){
+    adaptive = flag;
+  }
+
+  /**
+  * Set the max number of threads (and in-flight fetches) used in adaptive mode. Defaults to 4 times the number of threads.
+  * @param maxThreads Max number of threads.
+  */
+  public void setMaxThreads(int maxThreads){
+    this.maxThreads = Math.max(1, maxThreads);
+  }
+
+  /**
+  * Set max number of times a fetch that failed with a transient error (timeout, connection failure, 429 or 5xx)
+  * is retried. Retries are delayed with exponential backoff and jitter.
+  * @param maxRetries Max number of retries, 0 to disable.
+  */
+  public void setMaxRetries(int maxRetries){
+    this.maxRetries = Math.max(0, maxRetries);
+  }
+
+  /**
+  * Set number of consecutive failures after which a host's URLs are parked for a cool-down period.
+  * DNS and connection failures park the host at once.
+  * @param threshold Number of consecutive failures.
+  */
+  public void setBreakerThreshold(int threshold){
+    breakerThreshold = Math.max(1, threshold);
+  }
+
+  /**
+  * Set max number of body bytes read per page. Pages announcing a larger Content-Length are skipped
+  * before their body is downloaded, others are truncated at the limit.
+  * @param maxBodySize Max body size in bytes, 0 for no limit.
+  */
+  public void setMaxBodySize(int maxBodySize){
+    this.maxBodySize = Math.max(0, maxBodySize);
+  }
+
+  /**
+  * Set content types of pages to parse, checked on the Content-Type header before the body is downloaded.
+  * Matching is case-insensitive on the start of the header. Defaults to HTML and XHTML.
+  * @param types Content types, an empty array to accept all.
+  */
+  public void setContentTypes(String[] types){
+    contentTypes = types;
+  }
+
+  /**
+  * Enable content sniffing. URLs of any extension are crawled, and whether a response is parsed is decided
+  * by its Content-Type and first bytes. The outcome is learned per URL pattern (host, directory and extension),
+  * and patterns that keep serving non-HTML responses are no longer fetched.
+  * @param flag {@code true/false}.
+  */
+  public void setSniff(boolean flag){
+    sniff = flag;
+  }
+
+  /**
+  * Enable near-duplicate page detection. Pages whose text SimHash is within the given Hamming distance of an
+  * earlier page are not expanded, and URL patterns (path with digits folded, and query parameter names) that
+  * keep producing near-duplicates are moved behind all other URLs. Disabled by default.
+  * @param maxDistance Max Hamming distance of near-duplicates (at most 3), negative to disable.
+  */
+  public void setNearDuplicates(int maxDistance){
+    nearDups = (maxDistance < 0 ? null : new SimHashIndex(maxDistance));
+  }
+
+  /**
+  * Enable link discovery in scripts. URL and path literals are extracted from inline scripts, linked script files
+  * (each fetched once per crawl) and JSON responses, and crawled like the page's links. Also adds ".json" to the
+  * web page extensions. Disabled by default.
+  * @param flag {@code true/false}.
+  */
+  public void setScriptLinks(boolean flag){
+
+    scriptLinks = (flag ? new ScriptLinkExtractor() : null);
+    if (flag)
+      addExt(".json");
+  }
+
+  /**
+  * Enable deduplication of URL aliases. URLs differing only by scheme, a leading "www.", a default port or
+  * a trailing slash are crawled once, as are URLs known to redirect to a queued or crawled URL. A page's
+  * {@code <link rel="canonical">} is honoured when it names the page's own path, e.g. without tracking or
+  * session parameters. Disabled by default.
+  * @param flag {@code true/false}.
+  */
+  public void setCanonicalDedup(boolean flag){
+    aliases = (flag ? new CanonicalIndex() : null);
+  }
+
+  /**
+  * Enable per-template crawl budgets. URL templates are learned while crawling, by folding numbers and merging
+  * path segments and query values that take many distinct values (e.g. {@code /product?id=#},
+  * {@code /tag/&#42;/page/#}). Each template has its first URLs queued, then only a sample of the rest.
+  * Disabled by default.
+  * @param budget URLs queued per template before sampling, 0 to disable.
+  * @param sample Fraction of a template's URLs queued once its budget is spent, 0 to 1.
+  */
+  public void setTemplateBudget(int budget, double sample){
+    templates = (budget > 0 ? new TemplateTrie(budget, sample) : null);
+  }
+
+  /**
+  * Enable the memory governor, which watches heap usage and GC pressure while crawling and responds in steps:
+  * slowing link admission and trimming the status queue, spilling the URL queues to disk, then dropping
+  * deprioritized URLs and halving the workers. Responses are undone as pressure drops. Disabled by default.
+  * @param flag {@code true/false}.
+  */
+  public void setMemoryGuard(boolean flag){
+    memoryGuard = flag;
+  }
+
+  /**
+  * Obtain the responses to memory pressure taken in the last crawl.
+  * @return Descriptions of the actions taken.
+  */
+  public synchronized List<String> getMemoryActions(){
+    return new ArrayList<String>(memoryActions);
+  }
+
+  /**
+  * Respond to a change of the memory pressure level.
+  * @param level New pressure level.
+  * @param reason Measurements behind the change.
+  */
+  synchronized void onMemoryPressure(int level, String reason){
+
+    int previous = memoryLevel;
+    memoryLevel = level;
+    if (level > previous){
+      memoryAction(String.format("Pressure level %d, %s", level, reason));
+      if (previous < MemoryGovernor.ELEVATED)
+        memoryAction(String.format("Slowing link admission, %d status messages trimmed", trimStatusQueue()));
+      if (level >= MemoryGovernor.HIGH && previous < MemoryGovernor.HIGH)
+        memoryAction(String.format("%d queued URLs spilled to disk", inputQueue.spill(CHUNK_IN_MEMORY) + lowQueue.spill(CHUNK_IN_MEMORY)));
+      if (level >= MemoryGovernor.CRITICAL && previous < MemoryGovernor.CRITICAL){
+        int dropped = lowQueue.size();
+        lowQueue.clear();
+        memoryAction(String.format("%d deprioritized URLs dropped", dropped));
+        if (active && poolSize > 1){
+          throttledFrom = poolSize;
+          resize(Math.max(1, poolSize / 2));
+          memoryAction(String.format("Workers throttled from %d to %d", throttledFrom, poolSize));
+        }
+      }
+    }else{
+      memoryAction(String.format("Pressure down to level %d, %s", level, reason));
+      if (level < MemoryGovernor.CRITICAL && throttledFrom > 0){
+        if (active)
+          resize(throttledFrom);
+        memoryAction(String.format("Workers restored to %d", throttledFrom));
+        throttledFrom = 0;
+      }
+    }
+  }
+
+  private void memoryAction(String action){
+
+    memoryActions.add(action);
+    statusQueue.add("[!] Memory: " + action);
+  }
+
+  /**
+  * Drop the oldest status messages beyond {@code STATUS_KEEP}.
+  * @return Number of messages dropped.
+  */
+  private synchronized int trimStatusQueue(){
+
+    int excess = statusQueue.size() - STATUS_KEEP;
+    if (excess <= 0)
+      return 0;
+    statusQueue.subList(0, excess).clear();
+    return excess;
+  }
+
+  /**
+  * Slow a worker down before it queues a page's links while memory is under pressure.
+  */
+  private void throttleAdmission(){
+
+    int level = memoryLevel;
+    if (level == MemoryGovernor.NORMAL)
+      return;
+    trimStatusQueue();
+    try{
+      Thread.sleep(level == MemoryGovernor.ELEVATED ? 20 : 100);
+    }catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+  * Record every fetch of the crawl in a result store: status, content type, size, latency, depth, parent
+  * page and time. The store is not closed by the spider.
+  * @param store Store opened for writing, null to disable.
+  */
+  public void setResultStore(ResultStore store){
+    results = store;
+  }
+
+  /**
+  * Obtain the result store in use.
+  * @return Result store, null if none.
+  */
+  public ResultStore getResultStore(){
+    return results;
+  }
+
+  /**
+  * Remember the page a queued URL was found on, and its depth.
+  */
+  private void setOrigin(int id, int parent){
+
+    if (id >= origins.length){
+      int len = Math.max(id + 1, Math.max(1024, origins.length * 2));
+      origins = Arrays.copyOf(origins, len);
+      depths = Arrays.copyOf(depths, len);
+    }
+    origins[id] = parent + 1;
+    depths[id] = (parent == -1 || parent >= depths.length ? 0 : depths[parent] + 1);
+  }
+
+  /**
+  * Append the outcome of a fetch to the result store.
+  * @param page Page fetched, null on error.
+  * @param error Fetch error, null on success.
+  * @param stime Time the fetch started.
+  */
+  private void recordResult(int id, String url, Page page, FetchException error, long stime){
+
+    int parent, depth;
+    synchronized(this){
+      parent = (id < origins.length ? origins[id] - 1 : -1);
+      depth = (id < depths.length ? depths[id] : 0);
+    }
+    long now = System.currentTimeMillis();
+    CrawlRecord record;
+    if (page != null)
+      record = new CrawlRecord(url, (parent == -1 ? "" : store.get(parent)), page.getContentType(), "", now,
+                               page.getStatusCode(), page.getSize(), (int)page.getLatency(), depth);
+    else
+      record = new CrawlRecord(url, (parent == -1 ? "" : store.get(parent)), "", error.getKind() + ": " + error.getMessage(), now,
+                               error.getStatusCode(), 0, (int)(now - stime), depth);
+    try{
+      results.append(record);
+    }catch(IOException e){
+      synchronized(this){
+        statusQueue.add("[-] ResultStore: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+  * Obtain the number of URL templates learned in the last crawl.
+  * @return Number of templates, 0 if template budgets are disabled.
+  */
+  public int getTemplateCount(){
+    return (templates == null ? 0 : templates.size());
+  }
+
+  /**
+  * Obtain the number of URLs not queued in the last crawl for exceeding their template's budget.
+  * @return Number of URLs.
+  */
+  public int getTemplateSkipCount(){
+    return (templates == null ? 0 : templates.getSkipped());
+  }
+
+  /**
+  * Obtain the number of fetched pages found to be aliases of other pages in the last crawl.
+  * @return Number of alias pages.
+  */
+  public int getAliasCount(){
+    return aliasCount;
+  }
+
+  /**
+  * Obtain the URL crawled (or queued) for a URL or any of its aliases.
+  * @param url URL to look up.
+  * @return The canonical URL, or the given URL if it has none.
+  */
+  public String getCanonicalURL(String url){
+
+    if (aliases == null)
+      return url;
+    try{
+      int owner = aliases.ownerOf(new URL(url));
+      return (owner == -1 ? url : store.get(owner));
+    }catch(MalformedURLException e){
+      return url;
+    }
+  }
+
+  /**
+  * Obtain the number of near-duplicate pages found in the last crawl.
+  * @return Number of near-duplicate pages.
+  */
+  public int getNearDuplicateCount(){
+    return nearDupCount;
+  }
+
+  /**
+  * Obtain the number of URL patterns deprioritized in the last crawl for producing near-duplicates.
+  * @return Number of URL patterns.
+  */
+  public int getTrapPatternCount(){
+    return trapPatterns;
+  }
+
+  /**
+  * Set keywords of URLs that are not to be opened. The matching is case-insensitive.
+  * @param keywords Array of keywords.
+  */
+  public void setIgnore(String[] keywords){
+    ignore = keywords;
+  }
+
+  /**
+  * Obtain the URL store holding every URL seen by the spider.
+  * @return The URL store.
+  */
+  public UrlStore getUrlStore(){
+    return store;
+  }
+
+  /**
+  * Keep the bytes of interned URLs outside the Java heap. Must be called before the spider is started.
+  * @param flag {@code true/false}.
+  */
+  public void setOffHeapURLs(boolean flag){
+    store.setOffHeap(flag);
+  }
+
+  /**
+  * Set a link graph to record the links found in every parsed page. Disabled by default.
+  * A graph created on {@code getUrlStore()} records node IDs without re-interning the URLs.
+  * @param graph Link graph to record to, {@code null} to disable.
+  */
+  public void setLinkGraph(LinkGraph graph){
+    linkGraph = graph;
+  }
+
+  /**
+  * Obtain the link graph in use.
+  * @return The link graph, {@code null} if not enabled.
+  */
+  public LinkGraph getLinkGraph(){
+    return linkGraph;
+  }
+
+  /**
+  * Record the links of a parsed page to the link graph, if enabled.
+  * @param page ID of the parsed page.
+  * @param links IDs of the URLs found in the page.
+  * @param count Number of IDs in {@code links}.
+  */
+  private void recordLinks(int page, int[] links, int count){
+
+    if (linkGraph == null)
+      return;
+    try{
+      if (linkGraph.getUrlStore() == store){
+        linkGraph.addLinks(page, links, count);
+      }else{
+        ArrayList<String> targets = new ArrayList<String>();
+        for (int i = 0; i < count; i++)
+          targets.add(store.get(links[i]));
+        linkGraph.addLinks(store.get(page), targets);
+      }
+    }catch(IOException e){
+      synchronized(this){
+        statusQueue.add("[-] LinkGraph: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+  * Load plugins defined by user.
+  * @param names Name of plugins.
+  * @return {@code true} if all plugins are loaded successfully.
+  */
+  public boolean loadPlugins(String[] names){
+
+    Class<?> cl;
+    Constructor<?> cons;
+    Plugin pl;
+    String path = "";
+    for (String name : names){
+      if (name.equals("Plugin"))
+        continue;
+      path = "com.umarabdul.jspider.plugin." + name;
+      try{
+        cl = Class.forName(path);
+        cons = cl.getConstructor(JSpider.class);
+        pl = (Plugin)(cons.newInstance(this));
+        String[] opts = pl.getRequiredOptions();
+        if (opts != null){
+          for (String opt : opts){
+            if (!(pluginOptions.containsKey(opt.toLowerCase()))){
+              System.out.println(String.format("[-] JSpider: Plugin option '%s' not defined and is required by %s", opt.toLowerCase(), name));
+              return false;
+            }
+          }
+        }
+        plugins.add(pl);
+      }catch(ClassNotFoundException e){
+        System.out.println("[-] JSpider: Invalid plugin: " +name);
+        return false;
+      }catch(Exception e2){
+        System.out.println("[-] JSpider: Error loading plugin: " +name);
+        e2.printStackTrace();
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+  * Set an option for loaded plugins.
+  * @param name Name of option (will be made case-insensitive).
+  * @param value Value to assign to the option.
+  */
+  public void setPluginOption(String name, String value){
+    pluginOptions.put(name.toLowerCase(), value);
+  }
+
+  /**
+  * Obtain a HashMap of defined plugin options.
+  * @return HashMap of defined plugin options.
+  */
+  public HashMap<String, String> getPluginOptions(){
+    return new HashMap<String, String>(pluginOptions);
+  }
+
+  /**
+  * Start all loaded plugins. To be called only after JSpider is started successfuly.
+  */
+  private void startPlugins(){
+
+    runners.clear();
+    PluginRunner runner = null;
+    for (Plugin pl : plugins){
+      try{
+        runner = new PluginRunner(pl, this);
+      }catch(IllegalArgumentException e){
+        System.out.println(String.format("[-] JSpider: %s: %s", pl.getPluginName(), e.getMessage()));
+        continue;
+      }
+      if (runner.start())
+        runners.add(runner);
+    }
+  }
+
+  /**
+  * Obtain the runtimes of the started plugins, for their stats.
+  * @return List of plugin runners.
+  */
+  public List<PluginRunner> getPluginRunners(){
+    return new ArrayList<PluginRunner>(runners);
+  }
+
+  /**
+  * Wait for the started plugins to process their queues. Plugin threads are daemons, so plugins
+  * still running when the invoking code returns will not keep the JVM alive.
+  * @param timeout Max time to wait in milliseconds, 0 to wait forever.
+  * @return {@code true} if all plugins finished.
+  */
+  public boolean awaitPlugins(long timeout){
+
+    long deadline = System.currentTimeMillis() + timeout;
+    for (PluginRunner runner : runners){
+      long left = (timeout <= 0 ? 0 : Math.max(1, deadline - System.currentTimeMillis()));
+      if (!(runner.await(left)))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+  * Pause the spider. Workers finish the pages they are on, then wait until resumed.
+  */
+  public synchronized void pause(){
+
+    if (active && !(paused)){
+      paused = true;
+      statusQueue.add("[*] Paused, " + parsing + " fetches in flight");
+    }
+  }
+
+  /**
+  * Resume a paused spider.
+  */
+  public synchronized void resume(){
+
+    if (paused){
+      paused = false;
+      statusQueue.add("[*] Resumed");
+      notifyAll();
+    }
+  }
+
+  /**
+  * Check if the spider is paused.
+  * @return {@code true/false}.
+  */
+  public boolean isPaused(){
+    return paused;
+  }
+
+  /**
+  * Grow or shrink the number of worker threads while the spider is running. New workers are started at once,
+  * while extra workers exit once done with their current page. In adaptive mode, in-flight fetches stay
+  * bounded by the limiter too.
+  * @param count Number of worker threads wanted.
+  */
+  public synchronized void resize(int count){
+
+    count = Math.max(1, count);
+    if (!(active)){
+      threads = count;
+      return;
+    }
+    poolSize = count;
+    statusQueue.add(String.format("[*] Resizing from %d to %d workers", workers, count));
+    for (; workers < count; workers++)
+      dispatch();
+    notifyAll(); // Paused workers to be retired.
+  }
+
+  /**
+  * Obtain the number of worker threads wanted, as set by {@code resize()}.
+  * @return Number of workers.
+  */
+  public synchronized int getPoolSize(){
+    return (active ? poolSize : threads);
+  }
+
+  /**
+  * Obtain the number of worker threads still running.
+  * @return Number of workers.
+  */
+  public synchronized int getWorkerCount(){
+    return workers;
+  }
+
+  /**
+  * Obtain the number of pages being fetched or parsed.
+  * @return Number of pages in flight.
+  */
+  public synchronized int getInFlight(){
+    return parsing;
+  }
+
+  /**
+  * Obtain the number of URLs waiting to be crawled, retries and parked URLs included.
+  * @return Number of queued URLs.
+  */
+  public synchronized int getQueuedCount(){
+    return inputQueue.size() + lowQueue.size() + retries.size() + parkedCount;
+  }
+
+  /**
+  * Stop taking new pages and let the workers finish the ones they are on. Returns at once; use
+  * {@code awaitWorkers()} to wait for the workers to exit.
+  * @return Number of fetches in flight when the drain started.
+  */
+  public synchronized int drain(){
+
+    int inFlight = parsing;
+    if (active){
+      active = false;
+      statusQueue.add(String.format("[*] Draining, %d fetches in flight", inFlight));
+    }
+    paused = false;
+    notifyAll();
+    return inFlight;
+  }
+
+  /**
+  * Wait for the workers of the current crawl to exit.
+  * @param timeout Max time to wait in milliseconds, 0 for no limit.
+  * @return {@code true} if all workers exited.
+  */
+  public synchronized boolean awaitWorkers(long timeout){
+
+    long deadline = System.currentTimeMillis() + timeout;
+    try{
+      while (workers > 0){
+        long left = deadline - System.currentTimeMillis();
+        if (timeout > 0 && left <= 0)
+          return false;
+        wait(timeout > 0 ? left : 0);
+      }
+    }catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+  * Decide whether a worker should take a new page, waiting while the spider is paused.
+  * Retires the worker if the pool was shrunk, and starts draining once a byte or time budget is spent.
+  * @return {@code true} if the worker may continue, {@code false} if it must exit (it is then uncounted).
+  */
+  private synchronized boolean awaitTurn(){
+
+    try{
+      while (paused && active && workers <= poolSize)
+        wait();
+    }catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+    }
+    if (workers > poolSize){
+      workers--;
+      return false;
+    }
+    if (active && !(budgetSpent)){
+      String reason = null;
+      if (maxBytes > 0 && bytes >= maxBytes)
+        reason = String.format("%d of %d bytes downloaded", bytes, maxBytes);
+      else if (timeLimit > 0 && System.currentTimeMillis() - startTime >= timeLimit)
+        reason = String.format("time limit of %.1f seconds reached", timeLimit / 1000.0);
+      if (reason != null){
+        budgetSpent = true;
+        active = false;
+        statusQueue.add(String.format("[!] Budget spent, %s. Draining %d fetches in flight", reason, parsing));
+      }
+    }
+    if (active && !(Thread.currentThread().isInterrupted()))
+      return true;
+    workers--;
+    return false;
+  }
+
+  /**
+  * Start a worker on the executor, or on a new thread.
+  */
+  private void dispatch(){
+
+    if (executor != null)
+      executor.execute(this);
+    else
+      new Thread(this).start();
+  }
+
+  /**
+  * Check if the spider is actively running.
+  * @return {@code true/false}.
+  */
+  public boolean isActive(){
+    return (active == true && workers > 0);
+  }
+
+  /**
+  * Intern a URL found in a page, then queue and yield it.
+  * @param link URL found in the page, fragment included.
+  * @param parent ID of the page.
+  * @return ID of the URL, -1 if malformed.
+  */
+  private int processLink(String link, int parent){
+
+    link = link.split("#")[0];
+    URL urlObj;
+    try{
+      urlObj = new URL(link);
+    }catch(MalformedURLException e){
+      return -1;
+    }
+    int id = store.intern(link);
+    addTarget(link, urlObj, id, parent);
+    yieldURL(urlObj, id);
+    return id;
+  }
+
+  /**
+  * Add a web page URL to targets/input queue.
+  * @param url URL to add.
+  * @param urlObj Parsed URL.
+  * @param id ID of the URL in the store.
+  * @param parent ID of the page the URL was found on.
+  */
+  private void addTarget(String url, URL urlObj, int id, int parent){
+    
+    // Enforce external URL policy.
+    if (followExternal == false && urlObj.getHost().endsWith(baseHost) == false)
+      return;
+    // Validate page extension, or the learned content type of the URL's pattern when sniffing.
+    if (sniff){
+      if (typeCache.isExcluded(urlObj, isPagePath(urlObj.getPath())))
+        return;
+    }else if (!(hasPageExt(urlObj.getPath()))){
+      return;
+    }
+    // Check if url is to be ignored.
+    for (String keyword : ignore){
+      if (url.toLowerCase().contains(keyword.toLowerCase()))
+        return;
+    }
+    // Add to targets queue, if not already crawled, and max number of URLs to parse is not exceeded.
+    synchronized(this){
+      if (seen.get(id) == true || getPageCount() >= max)
+        return;
+      seen.set(id);
+      if (aliases != null && aliases.claim(urlObj, id) != -1)
+        return; // Alias of a URL already queued.
+      if (templates != null){
+        int verdict = templates.admit(urlObj);
+        if (verdict == TemplateTrie.SKIP)
+          return;
+        if (verdict == TemplateTrie.ADMIT_LAST)
+          statusQueue.add("[*] Template budget spent, sampling URLs like: " + templates.templateOf(urlObj));
+      }
+      inputQueue.add(id);
+      if (results != null)
+        setOrigin(id, parent);
+    }
+    if (proxy.size() == 0)
+      dnsCache.prefetch(urlObj.getHost());
+  }
+
+  /**
+  * Build the URL pattern used to learn crawl traps: host, path with digit runs folded, and sorted query parameter names.
+  */
+  private static String trapPatternOf(URL urlObj){
+
+    StringBuilder sb = new StringBuilder(urlObj.getHost()).append(":").append(urlObj.getPort());
+    sb.append(urlObj.getPath().replaceAll("[0-9]+", "#"));
+    if (urlObj.getQuery() != null){
+      TreeSet<String> names = new TreeSet<String>();
+      for (String param : urlObj.getQuery().split("&"))
+        names.add(param.split("=", 2)[0]);
+      sb.append("?").append(String.join("&", names));
+    }
+    return sb.toString();
+  }
+
+  /**
+  * Check if a URL matches a pattern learned to produce near-duplicates.
+  */
+  private boolean isTrap(int id){
+
+    try{
+      int[] stats = dupPatterns.get(trapPatternOf(new URL(store.get(id))));
+      return (stats != null && isTrapStats(stats));
+    }catch(MalformedURLException e){
+      return false;
+    }
+  }
+
+  private static boolean isTrapStats(int[] stats){
+    return (stats[1] >= 3 && stats[1] * 4 >= stats[0]); // At least a quarter of the pages are near-duplicates.
+  }
+
+  /**
+  * Record the redirect target and the canonical link of a fetched page as its aliases.
+  * @return {@code true} if they belong to another queued or crawled page, whose links will be followed instead.
+  */
+  private boolean isAlias(int id, String url, Page page){
+
+    int owner = -1;
+    String alias = null;
+    try{
+      URL urlObj = new URL(url);
+      URL finalObj = new URL(page.getFinalURL());
+      owner = aliases.claim(finalObj, id);
+      if (owner != -1 && owner != id)
+        alias = page.getFinalURL();
+      Element link = page.getDocument().selectFirst("link[rel=canonical][href]");
+      if (alias == null && link != null){
+        URL canonObj = new URL(link.attr("abs:href"));
+        // Only canonical links naming the page's own path, many sites point every page to their home page.
+        if (CanonicalIndex.keyOf(canonObj, false).equals(CanonicalIndex.keyOf(urlObj, false))){
+          owner = aliases.claim(canonObj, id);
+          if (owner != -1 && owner != id)
+            alias = canonObj.toString();
+        }
+      }
+    }catch(MalformedURLException e){
+      return false;
+    }
+    if (alias == null)
+      return false;
+    synchronized(this){
+      aliasCount++;
+      statusQueue.add(String.format("[*] Alias of %s: %s", store.get(owner), url));
+    }
+    return true;
+  }
+
+  /**
+  * Fingerprint a parsed page and check it against earlier pages, learning the URL patterns that produce near-duplicates.
+  * @return {@code true} if the page is a near-duplicate and its links should not be followed.
+  */
+  private boolean isNearDuplicate(int id, String url, Page page){
+
+    long print = SimHashIndex.fingerprint(page.getDocument().text());
+    if (print == 0)
+      return false;
+    int near = nearDups.findOrAdd(print, id);
+    String pattern = null;
+    try{
+      pattern = trapPatternOf(new URL(url));
+    }catch(MalformedURLException e){
+      return (near != -1);
+    }
+    synchronized(this){
+      int[] stats = dupPatterns.get(pattern);
+      if (stats == null){
+        stats = new int[2];
+        dupPatterns.put(pattern, stats);
+      }
+      boolean trap = isTrapStats(stats);
+      stats[0]++;
+      if (near != -1){
+        stats[1]++;
+        nearDupCount++;
+        statusQueue.add(String.format("[*] Near-duplicate of %s: %s", store.get(near), url));
+      }
+      if (!(trap) && isTrapStats(stats)){
+        trapPatterns++;
+        statusQueue.add("[*] Deprioritizing URLs like: " + pattern);
+      }
+    }
+    return (near != -1);
+  }
+
+  /**
+  * Check if a path ends with one of the web page extensions.
   */
-  public void setHideExternal(boolean flag){
-    hideExternal = flag;
+  private boolean hasPageExt(String path){
+
+    for (String ext : exts){
+      if (path.endsWith(ext))
+        return true;
+    }
+    return false;
   }
 
   /**
-  * Set max number of pages to parse before aborting.
-  * @param max Max number of pages to parse.
+  * Check if a path has a web page extension or no extension at all.
   */
-  public void setMax(int max){
-    this.max = max;
+  private boolean isPagePath(String path){
+    return (hasPageExt(path) || !(path.substring(path.lastIndexOf('/') + 1).contains(".")));
   }
 
   /**
-  * Set read timeout for JBrowser.
-  * @param timeout Read timeout in milliseconds.
+  * Fetch a URL to crawl in a thread-safe manner.
+  * Retries whose backoff expired come first, then parked URLs of hosts whose circuit may be probed, then the input queue.
+  * In adaptive mode, permits of the global and host limiters are taken for the returned URL. The URL is counted
+  * as being parsed with its permits taken, so a worker refused a permit never sees an idle crawl and exits.
+  * Every path is subject to the page budget: once it is spent, pending retries and parked URLs are dropped.
+  * @return ID of the URL to crawl, -1 if none currently available (which doesn't necessarily mean the operation is over).
   */
-  public void setTimeout(int timeout){
-    this.timeout = timeout;
+  private synchronized int getTarget(){
+
+    int id = nextTarget();
+    if (id != -1){
+      parsing++;
+      if (!(retries.isRetry(id)))
+        crawled.addId(id); // Counted here, so concurrent workers can't overshoot the budget.
+    }
+    return id;
   }
 
-  /**
-  * Set keywords of URLs that are not to be opened. The matching is case-insensitive.
-  * @param keywords Array of keywords.
-  */
-  public void setIgnore(String[] keywords){
-    ignore = keywords;
+  private int nextTarget(){
+
+    if (getPageCount() >= max){
+      if (retries.size() + parkedCount > 0){
+        statusQueue.add(String.format("[*] Page budget spent, %d pending retries and parked URLs dropped", retries.size() + parkedCount));
+        retries.clear();
+        parked.clear();
+        parkedCount = 0;
+      }
+      return -1;
+    }
+    if (adaptive && !(limiter.tryAcquire()))
+      return -1;
+    long now = System.currentTimeMillis();
+    int id;
+    while ((id = retries.poll(now)) != -1){
+      if (admit(id, now))
+        return id;
+    }
+    Iterator<Map.Entry<String, IntQueue>> it = parked.entrySet().iterator();
+    while (it.hasNext()){
+      Map.Entry<String, IntQueue> entry = it.next();
+      String host = entry.getKey();
+      CircuitBreaker breaker = getBreaker(host);
+      if (breaker.isDead()){
+        statusQueue.add(String.format("[-] Giving up on %s, %d URLs dropped", host, entry.getValue().size()));
+        parkedCount -= entry.getValue().size();
+        it.remove();
+        continue;
+      }
+      if (adaptive && !(getHostLimiter(host).tryAcquire()))
+        continue;
+      if (!(breaker.allowRequest(now))){
+        if (adaptive)
+          getHostLimiter(host).onIgnore();
+        continue;
+      }
+      id = entry.getValue().poll();
+      parkedCount--;
+      if (entry.getValue().isEmpty())
+        it.remove();
+      return id;
+    }
+    int scan = Math.min(inputQueue.size(), 64);
+    for (int i = 0; i < scan; i++){
+      id = inputQueue.poll();
+      if (trapPatterns > 0 && isTrap(id)){
+        if (memoryLevel < MemoryGovernor.CRITICAL)
+          lowQueue.add(id);
+        continue;
+      }
+      if (admit(id, now))
+        return id;
+    }
+    scan = (inputQueue.isEmpty() ? Math.min(lowQueue.size(), 64) : 0);
+    for (int i = 0; i < scan; i++){
+      id = lowQueue.poll();
+      if (admit(id, now))
+        return id;
+    }
+    if (adaptive)
+      limiter.onIgnore();
+    return -1;
   }
 
   /**
-  * Load plugins defined by user.
-  * @param names Name of plugins.
-  * @return {@code true} if all plugins are loaded successfully.
+  * Decide whether a URL can be fetched now. URLs of dead hosts are dropped, URLs of hosts with an open circuit
+  * are parked, and URLs of hosts at their concurrency limit go to the back of the input queue.
+  * @param id ID of the URL.
+  * @param now Current time, in milliseconds.
+  * @return {@code true} if the URL can be fetched.
   */
-  public boolean loadPlugins(String[] names){
+  private boolean admit(int id, long now){
 
-    Class<?> cl;
-    Constructor<?> cons;
-    Plugin pl;
-    String path = "";
-    for (String name : names){
-      if (name.equals("Plugin"))
-        continue;
-      path = "com.umarabdul.jspider.plugin." + name;
+    if (sniff){
       try{
-        cl = Class.forName(path);
-        cons = cl.getConstructor(JSpider.class);
-        pl = (Plugin)(cons.newInstance(this));
-        String[] opts = pl.getRequiredOptions();
-        if (opts != null){
-          for (String opt : opts){
-            if (!(pluginOptions.containsKey(opt.toLowerCase()))){
-              System.out.println(String.format("[-] JSpider: Plugin option '%s' not defined and is required by %s", opt.toLowerCase(), name));
-              return false;
-            }
-          }
-        }
-        plugins.add(pl);
-      }catch(ClassNotFoundException e){
-        System.out.println("[-] JSpider: Invalid plugin: " +name);
-        return false;
-      }catch(Exception e2){
-        System.out.println("[-] JSpider: Error loading plugin: " +name);
-        e2.printStackTrace();
-        return false;
+        URL urlObj = new URL(store.get(id));
+        if (typeCache.isExcluded(urlObj, isPagePath(urlObj.getPath())))
+          return false; // Pattern learned to be non-HTML after the URL was queued.
+      }catch(MalformedURLException e){}
+    }
+    String host = hostOf(id);
+    CircuitBreaker breaker = getBreaker(host);
+    if (breaker.isDead())
+      return false;
+    if (adaptive && !(getHostLimiter(host).tryAcquire())){
+      inputQueue.add(id);
+      return false;
+    }
+    if (!(breaker.allowRequest(now))){
+      if (adaptive)
+        getHostLimiter(host).onIgnore();
+      IntQueue queue = parked.get(host);
+      if (queue == null){
+        queue = new IntQueue();
+        parked.put(host, queue);
       }
+      queue.add(id);
+      parkedCount++;
+      return false;
     }
     return true;
   }
 
   /**
-  * Set an option for loaded plugins.
-  * @param name Name of option (will be made case-insensitive).
-  * @param value Value to assign to the option.
+  * Obtain the number of URLs waiting for a retry or for their host's circuit to close.
+  * @return Number of pending URLs.
   */
-  public void setPluginOption(String name, String value){
-    pluginOptions.put(name.toLowerCase(), value);
+  private synchronized int getPendingCount(){
+    return retries.size() + parkedCount;
   }
 
   /**
-  * Obtain a HashMap of defined plugin options.
-  * @return HashMap of defined plugin options.
+  * Obtain the circuit breaker of a host, creating it if needed.
+  * @param host Target host.
+  * @return Circuit breaker of the host.
   */
-  public HashMap<String, String> getPluginOptions(){
-    return pluginOptions;
+  private synchronized CircuitBreaker getBreaker(String host){
+
+    CircuitBreaker breaker = breakers.get(host);
+    if (breaker == null){
+      breaker = new CircuitBreaker(breakerThreshold, 5000, 2);
+      breakers.put(host, breaker);
+    }
+    return breaker;
   }
 
   /**
-  * Start all loaded plugins. To be called only after JSpider is started successfuly.
+  * Obtain the host and port of a stored URL, used to key per host state.
+  * @param id ID of the URL.
+  * @return Host and port of the URL, an empty string if malformed.
   */
-  private void startPlugins(){
+  private String hostOf(int id){
 
-    Thread t = null;
-    for (Plugin pl : plugins){
-      t = new Thread(pl);
-      t.start();
+    try{
+      URL urlObj = new URL(store.get(id));
+      return urlObj.getHost() + ":" + (urlObj.getPort() == -1 ? urlObj.getDefaultPort() : urlObj.getPort());
+    }catch(MalformedURLException e){
+      return "";
     }
   }
 
   /**
-  * Check if the spider is actively running.
-  * @return {@code true/false}.
+  * Obtain the limiter of a host, creating it if needed.
+  * @param host Target host.
+  * @return Limiter of the host.
   */
-  public boolean isActive(){
-    return (active == true && workers > 0);
+  private synchronized ConcurrencyLimiter getHostLimiter(String host){
+
+    ConcurrencyLimiter hostLimiter = hostLimiters.get(host);
+    if (hostLimiter == null){
+      hostLimiter = new ConcurrencyLimiter(threads, 1, maxThreads);
+      hostLimiters.put(host, hostLimiter);
+    }
+    return hostLimiter;
   }
 
   /**
-  * Add a web page URL to targets/input queue.
-  * @param url URL to add.
+  * Feed the outcome of a fetch to the host's circuit breaker and the limiters, and schedule a retry of transient failures.
+  * @param id ID of the fetched URL.
+  * @param host Host of the fetched URL.
+  * @param latency Fetch time, in milliseconds.
+  * @param error Fetch error, {@code null} on success.
   */
-  private void addTarget(String url) throws MalformedURLException{
-    
-    URL urlObj = new URL(url);
-    // Enforce external URL policy.
-    if (followExternal == false && urlObj.getHost().endsWith(baseHost) == false)
-      return;
-    // Validate page extension.
-    boolean valid = false;
-    for (String ext : exts){
-      if (urlObj.getPath().endsWith(ext)){
-        valid = true;
-        break;
+  private void onFetchDone(int id, String host, long latency, FetchException error){
+
+    releasePermits(host, latency, error);
+    CircuitBreaker breaker = getBreaker(host);
+    if (error == null){
+      breaker.onSuccess();
+      synchronized(this){
+        retries.done(id);
       }
+      return;
     }
-    if (!(valid))
+    FetchException.Kind kind = error.getKind();
+    boolean unreachable = (kind == FetchException.Kind.DNS || kind == FetchException.Kind.CONNECT);
+    if (!(unreachable || error.isCongestion() || kind == FetchException.Kind.IO)){
+      breaker.onSuccess(); // The host answered, the URL is just broken.
+      synchronized(this){
+        retries.done(id);
+      }
       return;
-    // Check if url is to be ignored.
-    for (String keyword : ignore){
-      if (url.toLowerCase().contains(keyword.toLowerCase()))
-        return;
     }
-    // Add to targets queue, if not already crawled, and max number of URLs to parse is not exceeded.
+    long now = System.currentTimeMillis();
+    breaker.onFailure(unreachable, now);
     synchronized(this){
-      if (inputQueue.contains(url) == false && crawled.contains(url) == false && crawled.size() < max)
-        inputQueue.add(url);
+      if (retries.schedule(id, maxRetries, now))
+        statusQueue.add(String.format("[*] Retry scheduled: %s", store.get(id)));
     }
   }
 
   /**
-  * Fetch a URL to crawl in a thread-safe manner.
-  * @return URL to crawl, {@code null} if none currently available (which doesn't necessarily mean the operation is over).
+  * Release the limiter permits taken for a fetch, feeding them its outcome.
+  * @param host Host of the fetched URL.
+  * @param latency Fetch time, in milliseconds.
+  * @param error Fetch error, {@code null} on success.
   */
-  private synchronized String getTarget(){
-    return ((inputQueue.size() > 0 && crawled.size() < max) ? inputQueue.remove(0) : null);
+  private void releasePermits(String host, long latency, FetchException error){
+
+    if (!(adaptive))
+      return;
+    ConcurrencyLimiter hostLimiter = getHostLimiter(host);
+    for (ConcurrencyLimiter l : new ConcurrencyLimiter[]{limiter, hostLimiter}){
+      if (error == null)
+        l.onSuccess(latency);
+      else if (error.isCongestion())
+        l.onCongestion();
+      else
+        l.onIgnore();
+    }
+    if (error != null && error.isCongestion()){
+      synchronized(this){
+        statusQueue.add(String.format("[!] Backing off %s: host limit %d, global limit %d", host, hostLimiter.getLimit(), limiter.getLimit()));
+      }
+    }
   }
 
   /**
   * Obtain the output queue. Used by the invoking code to receive URLs as they are captured.
-  * @return An ArrayList that will be continuously updated with captured URLs.
+  * URLs are held as IDs in the URL store and decoded when read.
+  * @return A list that will be continuously updated with captured URLs.
   */
-  public ArrayList<String> getOutputQueue(){
+  public List<String> getOutputQueue(){
     return outputQueue;
   }
 
@@ -285,11 +1487,19 @@ public class JSpider implements Runnable{
   }
 
   /**
-  * Obtain an ArrayList of URLs already spidered.
-  * Warning: Modifying the returned ArrayList while the spider is active may cause redundancy.
-  * @return ArrayList of spidered URLs.
+  * Add a message to the status queue, for components reporting through the spider.
+  * @param msg Status message.
+  */
+  public synchronized void addStatus(String msg){
+    statusQueue.add(msg);
+  }
+
+  /**
+  * Obtain a list of URLs already spidered.
+  * Warning: Modifying the returned list while the spider is active may cause redundancy.
+  * @return List of spidered URLs.
   */
-  public ArrayList<String> getCrawled(){
+  public List<String> getCrawled(){
     return crawled;
   }
 
@@ -298,23 +1508,28 @@ public class JSpider implements Runnable{
   * @return Total number of URLs obtained.
   */ 
   public int getURLCount(){
-    return urls.size();
+    return urlCount;
   }
 
   /**
-  * Set request headers.
+  * Set request headers. The default User-Agent is kept unless the headers give one.
   * @param headers HashMap of headers to add.
   */
   public void setHeaders(HashMap<String, String> headers){
-    this.headers = headers;
+    this.headers = new HashMap<String, String>(headers);
+    for (String name : headers.keySet()){
+      if (name.equalsIgnoreCase("User-Agent"))
+        return;
+    }
+    this.headers.put("User-Agent", DEFAULT_USER_AGENT);
   }
 
   /**
-  * Set request cookies.
+  * Set request cookies. Cookies set by responses during the crawl are added to them.
   * @param cookies HashMap of cookies to add.
   */
   public void setCookies(HashMap<String, String> cookies){
-    this.cookies = cookies;
+    this.cookies = new ConcurrentHashMap<String, String>(cookies);
   }
 
   /**
@@ -327,6 +1542,41 @@ public class JSpider implements Runnable{
     proxy.put("port", String.valueOf(port));
   }
 
+  /**
+  * Obtain the proxy in use, for plugins that make their own connections.
+  * @return Configured HTTP proxy, {@code Proxy.NO_PROXY} if none.
+  */
+  public Proxy getProxy(){
+
+    if (proxy.size() == 0)
+      return Proxy.NO_PROXY;
+    return new Proxy(Proxy.Type.HTTP, new InetSocketAddress(proxy.get("host"), Integer.parseInt(proxy.get("port"))));
+  }
+
+  /**
+  * Obtain a copy of the request headers.
+  * @return HashMap of request headers.
+  */
+  public HashMap<String, String> getHeaders(){
+    return new HashMap<String, String>(headers);
+  }
+
+  /**
+  * Obtain a copy of the request cookies, including those set by responses so far.
+  * @return HashMap of request cookies.
+  */
+  public HashMap<String, String> getCookies(){
+    return new HashMap<String, String>(cookies);
+  }
+
+  /**
+  * Obtain the read timeout.
+  * @return Read timeout in milliseconds.
+  */
+  public int getTimeout(){
+    return timeout;
+  }
+
   /**
   * Get a configured instance of JBrowser to use. Called once by all threads.
   * @return Configured instance of JBrowser.
@@ -335,7 +1585,7 @@ public class JSpider implements Runnable{
 
     JBrowser jb = new JBrowser();
     jb.setAutoParse(true);
-    jb.setCookie(cookies);
+    jb.setCookie(new HashMap<String, String>(cookies));
     jb.setRequestHeader(headers);
     if (proxy.size() > 0)
       jb.setProxy(proxy.get("host"), Integer.parseInt(proxy.get("port")));
@@ -343,23 +1593,117 @@ public class JSpider implements Runnable{
     return jb;
   }
 
+  /**
+  * Resolve the host of a URL through the DNS cache, failing at once for hosts known not to resolve.
+  * Skipped when a proxy is used, since the proxy resolves hosts.
+  */
+  private void resolveHost(String url) throws FetchException{
+
+    if (proxy.size() > 0)
+      return;
+    try{
+      dnsCache.resolve(new URL(url).getHost());
+    }catch(UnknownHostException e){
+      throw new FetchException(FetchException.Kind.DNS, 0, "UnknownHostException: " + e.getMessage());
+    }catch(MalformedURLException ignored){}
+  }
+
+  /**
+  * Find the links of a page's inline and linked scripts, or of a script or JSON response.
+  * @param page Fetched page.
+  * @param fetcher Fetcher to download linked scripts with.
+  * @return Absolute URLs found.
+  */
+  private ArrayList<String> findScriptLinks(Page page, PageFetcher fetcher){
+
+    ArrayList<String> found = new ArrayList<String>();
+    URL base = null;
+    try{
+      base = new URL(page.getFinalURL());
+    }catch(MalformedURLException e){
+      return found;
+    }
+    if (page.getText() != null)
+      return scriptLinks.extract(page.getText(), base);
+    for (Element script : page.getDocument().select("script")){
+      String src = script.absUrl("src");
+      if (src.length() == 0){
+        found.addAll(scriptLinks.extract(script.data(), base));
+        continue;
+      }
+      if (!(scriptLinks.markFetched(src)))
+        continue;
+      try{
+        Page js = fetcher.fetch(src);
+        if (js.getText() != null)
+          found.addAll(scriptLinks.extract(js.getText(), base));
+      }catch(FetchException e){
+        synchronized(this){
+          statusQueue.add("[-] Script: " + e.getMessage());
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+  * Obtain the number of fetches counted against the page budget: crawled URLs, less those found not to be HTML when sniffing.
+  * @return Number of pages.
+  */
+  public synchronized int getPageCount(){
+    return crawled.size() - nonPages;
+  }
+
+  /**
+  * Record whether a URL served HTML, in sniffing mode. Non-HTML fetches are given back to the page budget.
+  */
+  private void learnType(String url, boolean html){
+
+    if (!(html)){
+      synchronized(this){
+        nonPages++;
+      }
+    }
+    try{
+      URL urlObj = new URL(url);
+      String pattern = typeCache.record(urlObj, html, isPagePath(urlObj.getPath()));
+      if (pattern != null){
+        synchronized(this){
+          statusQueue.add("[*] Not HTML, skipping URLs like: " + pattern);
+        }
+      }
+    }catch(MalformedURLException ignored){}
+  }
+
+  /**
+  * Get a configured page fetcher for the workers. Called once by all threads.
+  * @return Configured instance of PageFetcher.
+  */
+  public PageFetcher getFetcher(){
+
+    PageFetcher fetcher = new PageFetcher(headers, cookies, proxy, timeout);
+    fetcher.setMaxBodySize(maxBodySize);
+    fetcher.setContentTypes(contentTypes);
+    fetcher.setSniff(sniff);
+    fetcher.setScripts(scriptLinks != null);
+    return fetcher;
+  }
+
   /**
   * Yield a discovered URL to the invoking code in a thead-safe manner while avoiding duplicates and adding filter.
-  * @param url URL to yield.
+  * @param urlObj Parsed URL to yield.
+  * @param id ID of the URL in the store.
   */
-  private synchronized void yieldURL(String url){
+  private synchronized void yieldURL(URL urlObj, int id){
     
     // filter.
-    try{
-      if (hideExternal && new URL(url).getHost().endsWith(baseHost) == false)
-        return;
-    }catch(MalformedURLException e){
+    if (hideExternal && urlObj.getHost().endsWith(baseHost) == false)
       return;
-    }
     // yield.
-    if (!(urls.contains(url))){
-      urls.add(url);
-      outputQueue.add(url);
+    if (!(urls.get(id))){
+      urls.set(id);
+      urlCount++;
+      outputQueue.addId(id);
     }
   }
 
@@ -372,53 +1716,112 @@ public class JSpider implements Runnable{
     try{
       Thread.sleep(50); // A delay to allow other threads to be dispatched faster.
     }catch(InterruptedException e1){}
+    int targetId = -1;
     String targetUrl = null;
-    JBrowser jb = getBrowser();
+    String host = null;
+    PageFetcher fetcher = getFetcher();
+    Page page = null;
     HashMap<String, ArrayList<String>> rawURLs = null;
-    while (active){
-      targetUrl = getTarget();
-      if (targetUrl == null){
-        if (parsing == 0)
+    int[] links = new int[256];
+    boolean retired = false; // Uncounted by awaitTurn().
+    while (true){
+      if (!(awaitTurn())){
+        retired = true;
+        break;
+      }
+      targetId = getTarget();
+      if (targetId == -1){
+        if (parsing == 0 && getPendingCount() == 0)
           break;
         try{
           Thread.sleep(50); // Wait for pages to be parsed.
         }catch(InterruptedException e2){}
         continue;
       }
+      targetUrl = store.get(targetId);
       synchronized(this){
-        parsing++;
-        crawled.add(targetUrl);
         statusQueue.add("[*] Parsing page: " +targetUrl+ "...");
       }
+      host = hostOf(targetId);
+      long ftime = System.currentTimeMillis();
       try{
-        jb.open(targetUrl);
-      }catch(JBrowserException e3){
+        resolveHost(targetUrl);
+        page = fetcher.fetch(targetUrl, (adaptive ? getHostLimiter(host).getTimeout(timeout) : timeout));
+        onFetchDone(targetId, host, page.getLatency(), null);
+        if (results != null)
+          recordResult(targetId, targetUrl, page, null, ftime);
+        synchronized(this){
+          bytes += page.getSize();
+        }
+        if (sniff)
+          learnType(targetUrl, true);
+      }catch(FetchException e3){
+        synchronized(this){
+          statusQueue.add("[-] FetchException: " +e3.getMessage());
+        }
+        if (sniff && e3.getKind() == FetchException.Kind.TYPE)
+          learnType(targetUrl, false);
+        if (results != null)
+          recordResult(targetId, targetUrl, null, e3, ftime);
+        onFetchDone(targetId, host, 0, e3);
+        synchronized(this){
+          parsing--;
+        }
+        continue;
+      }
+      if (aliases != null && isAlias(targetId, targetUrl, page)){
+        synchronized(this){
+          parsing--;
+        }
+        continue;
+      }
+      if (nearDups != null && isNearDuplicate(targetId, targetUrl, page)){
         synchronized(this){
-          statusQueue.add("[-] JBrowserException: " +e3.getMessage());
           parsing--;
         }
         continue;
       }
+      throttleAdmission();
       // Extract URLs
-      rawURLs = jb.getURLs();
+      rawURLs = page.getURLs();
+      int count = 0;
       for (String category : rawURLs.keySet()){
         for (String link : rawURLs.get(category)){
-          link = link.split("#")[0];
-          try{
-            addTarget(link);
-            yieldURL(link);
-          }catch(MalformedURLException ignored){
+          int id = processLink(link, targetId);
+          if (id == -1)
             continue;
-          }
+          if (count == links.length)
+            links = Arrays.copyOf(links, count * 2);
+          links[count++] = id;
+        }
+      }
+      if (scriptLinks != null){
+        for (String link : findScriptLinks(page, fetcher)){
+          int id = processLink(link, targetId);
+          if (id == -1)
+            continue;
+          if (count == links.length)
+            links = Arrays.copyOf(links, count * 2);
+          links[count++] = id;
         }
       }
+      recordLinks(targetId, links, count);
       synchronized(this){
         parsing--;
       }
     }
     // quit.
     synchronized(this){
-      workers--;
+      if (!(retired))
+        workers--;
+      if (workers == 0){
+        if (governor != null){
+          governor.close();
+          governor = null;
+        }
+        completion.complete(this);
+      }
+      notifyAll();
     }
   }
 
@@ -430,50 +1833,112 @@ public class JSpider implements Runnable{
   */
   public boolean start(boolean startupLog){
     
+    if (completion.isDone())
+      completion = new CompletableFuture<JSpider>();
     // Flush out all queues.
     inputQueue.clear();
     outputQueue.clear();
     statusQueue.clear();
+    seen.clear();
     urls.clear();
+    urlCount = 0;
     crawled.clear();
+    store.clear();
+    synchronized(this){
+      origins = new int[0];
+      depths = new int[0];
+    }
+    retries.clear();
+    breakers.clear();
+    parked.clear();
+    parkedCount = 0;
+    typeCache.clear();
+    nonPages = 0;
+    if (nearDups != null)
+      nearDups.clear();
+    dupPatterns.clear();
+    trapPatterns = 0;
+    nearDupCount = 0;
+    lowQueue.clear();
+    if (scriptLinks != null)
+      scriptLinks.clear();
+    if (aliases != null)
+      aliases.clear();
+    aliasCount = 0;
+    if (templates != null)
+      templates.clear();
+    synchronized(this){
+      bytes = 0;
+      budgetSpent = false;
+      paused = false;
+      memoryLevel = MemoryGovernor.NORMAL;
+      throttledFrom = 0;
+      memoryActions.clear();
+    }
     if (startupLog)
       System.out.println(String.format("[*] JSpider: Parsing base URL: %s...", baseUrl.toString()));
     // Parse our base URL.
-    JBrowser jb = getBrowser();
+    Page page = null;
     try{
-      jb.open(baseUrl.toString());
-    }catch(JBrowserException e1){
+      page = getFetcher().fetch(baseUrl.toString());
+    }catch(FetchException e1){
+      statusQueue.add("[-] FetchException: " + e1.getMessage());
       if (startupLog)
-        System.out.println("[-] JSpider: JBrowserException: " + e1.getMessage());
+        System.out.println("[-] JSpider: FetchException: " + e1.getMessage());
       return false;
     }
-    crawled.add(baseUrl.toString());
-    yieldURL(baseUrl.toString());
+    int baseId = store.intern(baseUrl.toString());
+    seen.set(baseId);
+    crawled.addId(baseId);
+    if (results != null){
+      setOrigin(baseId, -1);
+      recordResult(baseId, baseUrl.toString(), page, null, 0);
+    }
+    if (aliases != null){
+      aliases.claim(baseUrl, baseId);
+      isAlias(baseId, baseUrl.toString(), page);
+    }
+    yieldURL(baseUrl, baseId);
     // Populate targets queue.
-    ArrayList<String> links = jb.getURLs().get("href");
+    ArrayList<String> links = page.getURLs().get("href");
+    if (scriptLinks != null)
+      links.addAll(findScriptLinks(page, getFetcher()));
+    int[] valid = new int[links.size()];
+    int validCount = 0;
     for (String link : links){
-      link = link.split("#")[0];
-      try{
-        addTarget(link);
-        yieldURL(link);
-      }catch(MalformedURLException e2){
+      int id = processLink(link, baseId);
+      if (id == -1)
         statusQueue.add("[-] MalformedURLException: " + link);
-      }
+      else
+        valid[validCount++] = id;
     }
+    recordLinks(baseId, valid, validCount);
     if (inputQueue.size() == 0){
+      statusQueue.add("[-] No URL to spider!");
       if (startupLog)
         System.out.println("[-] JSpider: No URL to spider!");
       return false;
     }
     // Unleash the workers :)
+    int count = threads;
+    if (adaptive){
+      count = Math.max(threads, maxThreads);
+      limiter = new ConcurrencyLimiter(threads, 1, count);
+      hostLimiters.clear();
+    }
     if (startupLog)
-      System.out.println(String.format("[*] JSpider: Starting %d threads...", threads));
+      System.out.println(String.format("[*] JSpider: Starting %d threads%s...", count, (adaptive ? " (adaptive, " + threads + " in-flight initially)" : "")));
     active = true;
-    Thread t = null;
-    for (int i = 0; i < threads; i++){
-      t = new Thread(this);
-      t.start();
-      workers++;
+    synchronized(this){
+      workers = count; // Counted up front, so an early exit can't be taken for the last one.
+      poolSize = count;
+      startTime = System.currentTimeMillis();
+      for (int i = 0; i < count; i++)
+        dispatch();
+      if (memoryGuard){
+        governor = new MemoryGovernor(this);
+        governor.start();
+      }
     }
     if (startupLog)
       System.out.println(String.format("[+] JSpider: Threads dispatched, JSpider is now active!"));
@@ -492,11 +1957,8 @@ public class JSpider implements Runnable{
   */
   public void kill(){
 
-    try{
-      active = false;
-      while (workers > 0)
-        Thread.sleep(50);
-    }catch(InterruptedException ignored){}
+    drain();
+    awaitWorkers(0);
   }
 
   /**
@@ -514,7 +1976,22 @@ public class JSpider implements Runnable{
                       "       -ua|--useragent     <str>            :  User agent\n"+
                       "     -tout|--timeout       <int>            :  Read timeout\n"+
                       "        -t|--threads       <int>            :  Number of threads to use\n"+
+                      "        -a|--adaptive      <bool>           :  Adapt in-flight fetches to latency and errors\n"+
+                      "        -r|--retries       <int>            :  Max retries of transient fetch failures\n"+
+                      "       -ms|--max-size      <int>            :  Max bytes of a page body to read\n"+
+                      "       -ct|--content-types <t1,t2,...>      :  Content types of pages to parse\n"+
+                      "       -sn|--sniff         <bool>           :  Crawl any extension, parse by content type\n"+
+                      "       -js|--scripts       <bool>           :  Find links in scripts and JSON responses\n"+
+                      "       -cd|--canonical     <bool>           :  Crawl URL aliases (scheme, www, slash, redirects) once\n"+
+                      "       -tb|--template-budget <int>          :  URLs crawled per learned URL template, 0 for no limit\n"+
+                      "       -ts|--template-sample <float>        :  Fraction of a template's URLs crawled past its budget\n"+
+                      "       -mg|--memory-guard  <bool>           :  Degrade gracefully under memory pressure\n"+
+                      "       -nd|--near-dup      <int>            :  Max SimHash distance of near-duplicate pages (0-3), -1 to disable\n"+
+                      "       -mt|--max-threads   <int>            :  Max threads in adaptive mode\n"+
                       "        -m|--max           <int>            :  Max number of pages to parse\n"+
+                      "       -bl|--byte-limit    <int>            :  Max body bytes to download, 0 for no limit\n"+
+                      "       -tl|--time-limit    <int>            :  Max seconds to crawl for, 0 for no limit\n"+
+                      "       -as|--admin         <port>           :  Listen for control commands on a local port\n"+
                       "        -o|--output        <str>            :  Output file\n"+
                       "        -c|--cookie        <cookie>         :  Cookie string to use\n"+
                       "        -e|--external      <bool>           :  Follow external URLs\n"+
@@ -523,18 +2000,48 @@ public class JSpider implements Runnable{
                       "        -p|--proxy         <host:port>      :  Proxy host and port\n"+
                       "       -pl|--plugin        <pl1,...>        :  Plugin(s) to activate\n"+
                       "       -po|--plugin-options <name=val;...>  :  Plugin options\n"+
+                      "       -pt|--plugin-timeout <int>           :  Seconds to wait for plugins after the crawl, 0 for no limit\n"+
+                      "       -rs|--results       <prefix>         :  Store fetch records in <prefix>.{records,idx}, query with ResultStore\n"+
+                      "        -g|--graph         <prefix>         :  Export the link graph to <prefix>.{nodes,edges,csr}\n"+
+                      "       -oh|--offheap       <bool>           :  Keep interned URLs off the Java heap\n"+
                       "        -v|--verbose       <bool>           :  Verbose output\n"+
                       "        -h|--help                           :  Print this help page";
     ArgParser argParser = new ArgParser(args);
     argParser.setAlias("url", "u");
     argParser.setAlias("useragent", "ua");
-    argParser.setDefault("useragent", new JBrowser().getUserAgent());
     argParser.setAlias("timeout", "tout");
     argParser.setDefault("timeout", "5000");
     argParser.setAlias("threads", "t");
     argParser.setDefault("threads", "5");
+    argParser.setAlias("adaptive", "a");
+    argParser.setDefault("adaptive", "false");
+    argParser.setAlias("max-threads", "mt");
+    argParser.setAlias("retries", "r");
+    argParser.setDefault("retries", "2");
+    argParser.setAlias("max-size", "ms");
+    argParser.setDefault("max-size", "2097152");
+    argParser.setAlias("content-types", "ct");
+    argParser.setAlias("sniff", "sn");
+    argParser.setDefault("sniff", "false");
+    argParser.setAlias("near-dup", "nd");
+    argParser.setAlias("canonical", "cd");
+    argParser.setAlias("template-budget", "tb");
+    argParser.setAlias("memory-guard", "mg");
+    argParser.setDefault("memory-guard", "false");
+    argParser.setDefault("template-budget", "0");
+    argParser.setAlias("template-sample", "ts");
+    argParser.setDefault("template-sample", "0.1");
+    argParser.setDefault("canonical", "false");
+    argParser.setAlias("scripts", "js");
+    argParser.setDefault("scripts", "false");
+    argParser.setDefault("near-dup", "-1");
     argParser.setAlias("max", "m");
     argParser.setDefault("max", "100");
+    argParser.setAlias("byte-limit", "bl");
+    argParser.setDefault("byte-limit", "0");
+    argParser.setAlias("time-limit", "tl");
+    argParser.setDefault("time-limit", "0");
+    argParser.setAlias("admin", "as");
     argParser.setAlias("output", "o");
     argParser.setAlias("cookie", "-c");
     argParser.setAlias("external", "e");
@@ -545,6 +2052,12 @@ public class JSpider implements Runnable{
     argParser.setAlias("proxy", "p");
     argParser.setAlias("plugin", "pl");
     argParser.setAlias("plugin-options", "po");
+    argParser.setAlias("plugin-timeout", "pt");
+    argParser.setDefault("plugin-timeout", "0");
+    argParser.setAlias("graph", "g");
+    argParser.setAlias("results", "rs");
+    argParser.setAlias("offheap", "oh");
+    argParser.setDefault("offheap", "false");
     argParser.setAlias("verbose", "v");
     argParser.setDefault("verbose", "true");
     if (argParser.hasArg("--help") || argParser.hasArg("-h")){
@@ -557,48 +2070,78 @@ public class JSpider implements Runnable{
       return;
     }
 
-    JSpider spider = new JSpider(baseUrl, argParser.getInt("threads"), argParser.getInt("timeout"));
-    DataOutputStream dos = null;
-    String outfile = argParser.getString("output");
-    if (outfile != null)
-      dos = new DataOutputStream(new FileOutputStream(outfile));
-    boolean verbose = argParser.getBoolean("verbose");
-    if (argParser.hasKWarg("plugin"))
-      verbose = false; // always run in non-verbose mode if a plugin is defined.
-    spider.setFollowExternal(argParser.getBoolean("external"));
-    spider.setHideExternal(argParser.getBoolean("hide-external"));
+    CrawlConfig.Builder builder = new CrawlConfig.Builder(baseUrl);
+    builder.threads(argParser.getInt("threads")).timeout(argParser.getInt("timeout")).max(argParser.getInt("max"));
+    builder.maxBytes(Long.parseLong(argParser.getString("byte-limit"))).timeLimit(argParser.getInt("time-limit") * 1000L);
+    builder.followExternal(argParser.getBoolean("external")).hideExternal(argParser.getBoolean("hide-external"));
     if (argParser.getString("ignore") != null)
-      spider.setIgnore(argParser.getString("ignore").split(","));
-    if (argParser.getString("useragent") != null){
-      HashMap<String, String> header = new HashMap<String, String>();
-      header.put("User-Agent", argParser.getString("useragent"));
-      spider.setHeaders(header); 
-    }
-    spider.setMax(argParser.getInt("max"));
+      builder.ignore(argParser.getString("ignore").split(","));
+    if (argParser.getString("useragent") != null)
+      builder.header("User-Agent", argParser.getString("useragent"));
+    builder.adaptive(argParser.getBoolean("adaptive"));
+    if (argParser.hasKWarg("max-threads"))
+      builder.maxThreads(argParser.getInt("max-threads"));
+    builder.maxRetries(argParser.getInt("retries")).maxBodySize(argParser.getInt("max-size"));
+    builder.sniff(argParser.getBoolean("sniff")).nearDuplicates(argParser.getInt("near-dup")).scriptLinks(argParser.getBoolean("scripts"));
+    builder.canonicalDedup(argParser.getBoolean("canonical")).memoryGuard(argParser.getBoolean("memory-guard"));
+    builder.templateBudget(argParser.getInt("template-budget"), Double.parseDouble(argParser.getString("template-sample")));
+    if (argParser.getString("content-types") != null)
+      builder.contentTypes(argParser.getString("content-types").split(","));
     String cookie = argParser.getString("cookie");
     if (cookie != null)
-      spider.setCookies(JBrowser.parseCookies(cookie));
+      builder.cookies(JBrowser.parseCookies(cookie));
     if (argParser.getString("proxy") != null)
-      spider.setProxy(argParser.getString("proxy").split(":")[0], Integer.valueOf(argParser.getString("proxy").split(":")[1]));
-    
-    // Process plugins data. Plugin options must be loaded first before loading the plugin objects to allow for options verification by JSpider.loadPlugins()
+      builder.proxy(argParser.getString("proxy").split(":")[0], Integer.valueOf(argParser.getString("proxy").split(":")[1]));
+    builder.offHeap(argParser.getBoolean("offheap"));
+    // Plugin options are loaded with the plugins to allow for options verification by JSpider.loadPlugins()
     if (argParser.hasKWarg("plugin-options")){
       for (String opt : argParser.getString("plugin-options").split(";")){
         int pos = opt.indexOf("=");
         if (pos != -1)
-          spider.setPluginOption(opt.substring(0, pos).trim(), opt.substring(pos+1).trim());
+          builder.pluginOption(opt.substring(0, pos).trim(), opt.substring(pos+1).trim());
       }
     }
-    if (argParser.hasKWarg("plugin")){
-      if (!(spider.loadPlugins(argParser.getString("plugin").split(","))))
-        return;
+    if (argParser.hasKWarg("plugin"))
+      builder.plugins(argParser.getString("plugin").split(","));
+    JSpider spider = null;
+    try{
+      spider = new JSpider(builder.build());
+    }catch(IllegalArgumentException e){
+      System.out.println("[-] JSpider: " + e.getMessage());
+      return;
     }
+    // Idle keep-alive connections kept per host by HttpURLConnection, read once on its first connection.
+    if (System.getProperty("http.maxConnections") == null)
+      System.setProperty("http.maxConnections", String.valueOf(Math.max(5, spider.getPoolSize() * 4)));
+    DataOutputStream dos = null;
+    String outfile = argParser.getString("output");
+    if (outfile != null)
+      dos = new DataOutputStream(new FileOutputStream(outfile));
+    boolean verbose = argParser.getBoolean("verbose");
+    if (argParser.hasKWarg("plugin"))
+      verbose = false; // always run in non-verbose mode if a plugin is defined.
+    String resultsPrefix = argParser.getString("results");
+    if (resultsPrefix != null)
+      spider.setResultStore(ResultStore.create(resultsPrefix));
+    String graphPrefix = argParser.getString("graph");
+    if (graphPrefix != null)
+      spider.setLinkGraph(new LinkGraph(spider.getUrlStore()));
 
-    ArrayList<String> outputs = spider.getOutputQueue();
+    List<String> outputs = spider.getOutputQueue();
     ArrayList<String> status = spider.getStatusQueue();
     String url = null;
     long stime = System.currentTimeMillis(); // Start our timer.
     spider.start(true);
+    AdminServer admin = null;
+    if (argParser.hasKWarg("admin")){
+      try{
+        admin = new AdminServer(spider, argParser.getInt("admin"));
+        admin.start();
+        System.out.println(String.format("[*] JSpider: Admin socket listening on 127.0.0.1:%d", admin.getPort()));
+      }catch(IOException e){
+        System.out.println("[-] JSpider: Admin socket: " + e.getMessage());
+      }
+    }
     int fetchCount = 0;
     while (spider.isActive()){
       while (status.size() > 0 && verbose)
@@ -615,7 +2158,12 @@ public class JSpider implements Runnable{
         Thread.sleep(50);
       }catch(InterruptedException ignored){}
     }
+    spider.awaitWorkers(0); // Let a drain finish its fetches in flight.
+    while (status.size() > 0 && verbose)
+      System.out.println(status.remove(0));
     long etime = System.currentTimeMillis();
+    if (admin != null)
+      admin.close();
     // Extract remaining outputs, if any.
     while (outputs.size() > fetchCount){
       fetchCount++;
@@ -629,5 +2177,36 @@ public class JSpider implements Runnable{
       dos.close();
     System.out.println(String.format("[+] JSpider: Crawling completed, %d URLs found in %d pages!", spider.getURLCount(), spider.getCrawled().size()));
     System.out.println(String.format("[*] JSpider: Time taken: %.3f seconds.", (float)(etime - stime) / 1000.0));
+    DnsCache dns = spider.getDnsCache();
+    if (dns.size() > 0)
+      System.out.println(String.format("[*] JSpider: DNS cache: %d hosts, %d hits, %d lookups, %d failures.", dns.size(), dns.getHits(), dns.getMisses(), dns.getFailures()));
+    if (spider.getAliasCount() > 0)
+      System.out.println(String.format("[*] JSpider: %d pages found to be aliases of other pages.", spider.getAliasCount()));
+    for (String action : spider.getMemoryActions())
+      System.out.println("[!] JSpider: Memory: " + action);
+    if (spider.getTemplateSkipCount() > 0)
+      System.out.println(String.format("[*] JSpider: %d URL templates learned, %d URLs skipped by template budgets.", spider.getTemplateCount(), spider.getTemplateSkipCount()));
+    if (spider.getNearDuplicateCount() > 0)
+      System.out.println(String.format("[*] JSpider: %d near-duplicate pages not expanded, %d URL patterns deprioritized.", spider.getNearDuplicateCount(), spider.getTrapPatternCount()));
+    List<PluginRunner> runners = spider.getPluginRunners();
+    if (runners.size() > 0){
+      if (!(spider.awaitPlugins(argParser.getInt("plugin-timeout") * 1000L)))
+        System.out.println("[!] JSpider: Plugin timeout reached, abandoning unfinished plugins.");
+      for (PluginRunner runner : runners)
+        System.out.println(String.format("[*] JSpider: %s: %s", runner.getPlugin().getPluginName(), runner.getStats()));
+    }
+    if (resultsPrefix != null){
+      ResultStore results = spider.getResultStore();
+      results.close();
+      System.out.println(String.format("[+] JSpider: %d fetch records written to %s.{records,idx}", results.size(), resultsPrefix));
+    }
+    if (graphPrefix != null){
+      LinkGraph graph = spider.getLinkGraph();
+      graph.exportNodes(graphPrefix + ".nodes");
+      graph.exportEdgeList(graphPrefix + ".edges");
+      graph.exportCSR(graphPrefix + ".csr");
+      graph.close();
+      System.out.println(String.format("[+] JSpider: Link graph exported, %d nodes and %d edges written to %s.*", graph.getNodeCount(), graph.getEdgeCount(), graphPrefix));
+    }
   }
 }
@@ -0,0 +1,318 @@
+package com.umarabdul.jspider;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+
+/**
+* A compact recorder of the links between crawled pages.
+* URLs are interned to integer node IDs using a {@link UrlStore}, and the outgoing links of each page
+* are stored as a sorted adjacency list that is delta and varint encoded. Encoded records are buffered
+* in memory and spilled to a temporary file once the buffer grows past a threshold, so the heap cost of
+* the graph is mostly the URL store, which can be shared with the crawler.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class LinkGraph{
+
+  public static final int CSR_MAGIC = 0x4A534752; // "JSGR"
+  public static final int CSR_VERSION = 1;
+
+  private UrlStore store; // URL to node ID mapping.
+  private ByteArrayOutputStream buffer; // Encoded adjacency records not yet spilled.
+  private int spillThreshold; // Buffer size (in bytes) that triggers a spill to disk.
+  private File spillDir; // Directory for the spill file, null for the system default.
+  private File spillFile; // Spill file, created on first spill.
+  private OutputStream spill; // Append stream of the spill file.
+  private long edgeCount; // Total number of edges recorded.
+
+  /**
+  * Create a link graph with its own URL store, that spills to the system temp directory every 4MB.
+  */
+  public LinkGraph(){
+    this(new UrlStore());
+  }
+
+  /**
+  * Create a link graph on an existing URL store, that spills to the system temp directory every 4MB.
+  * @param store URL store to obtain node IDs from.
+  */
+  public LinkGraph(UrlStore store){
+    this(store, null, 4 * 1024 * 1024);
+  }
+
+  /**
+  * LinkGraph's constructor.
+  * @param store URL store to obtain node IDs from.
+  * @param spillDir Directory to create the spill file in, {@code null} for the system default.
+  * @param spillThreshold Size of the in-memory record buffer, in bytes, before it is spilled to disk.
+  */
+  public LinkGraph(UrlStore store, File spillDir, int spillThreshold){
+
+    this.store = store;
+    buffer = new ByteArrayOutputStream();
+    this.spillDir = spillDir;
+    this.spillThreshold = Math.max(1024, spillThreshold);
+    spillFile = null;
+    spill = null;
+    edgeCount = 0;
+  }
+
+  /**
+  * Obtain the node ID of a URL, assigning a new one if the URL hasn't been seen.
+  * @param url URL to intern.
+  * @return Node ID of the URL.
+  */
+  public int intern(String url){
+    return store.intern(url);
+  }
+
+  /**
+  * Obtain the URL of a node.
+  * @param id Node ID.
+  * @return URL of the node.
+  */
+  public String getURL(int id){
+    return store.get(id);
+  }
+
+  /**
+  * Obtain the URL store used for node IDs.
+  * @return The URL store.
+  */
+  public UrlStore getUrlStore(){
+    return store;
+  }
+
+  /**
+  * Obtain the number of nodes in the graph.
+  * @return Number of nodes.
+  */
+  public int getNodeCount(){
+    return store.size();
+  }
+
+  /**
+  * Obtain the number of edges in the graph.
+  * @return Number of edges.
+  */
+  public synchronized long getEdgeCount(){
+    return edgeCount;
+  }
+
+  /**
+  * Record the links found in a page. Self-links and duplicate targets are dropped.
+  * @param source URL of the page.
+  * @param targets URLs linked by the page.
+  * @throws IOException on spill file error.
+  */
+  public void addLinks(String source, Collection<String> targets) throws IOException{
+
+    int src = intern(source);
+    int[] dst = new int[targets.size()];
+    int count = 0;
+    for (String target : targets)
+      dst[count++] = intern(target);
+    addLinks(src, dst, count);
+  }
+
+  /**
+  * Record the links found in a page, by node ID. Self-links and duplicate targets are dropped.
+  * @param src Node ID of the page.
+  * @param dst Node IDs of the linked URLs, will be sorted in place.
+  * @param count Number of IDs to read from {@code dst}.
+  * @throws IOException on spill file error.
+  */
+  public synchronized void addLinks(int src, int[] dst, int count) throws IOException{
+
+    Arrays.sort(dst, 0, count);
+    int unique = 0;
+    for (int i = 0; i < count; i++){
+      if (dst[i] == src || (unique > 0 && dst[unique-1] == dst[i]))
+        continue;
+      dst[unique++] = dst[i];
+    }
+    if (unique == 0)
+      return;
+    writeVarint(buffer, src);
+    writeVarint(buffer, unique);
+    int prev = 0;
+    for (int i = 0; i < unique; i++){
+      writeVarint(buffer, dst[i] - prev);
+      prev = dst[i];
+    }
+    edgeCount += unique;
+    if (buffer.size() >= spillThreshold)
+      flushBuffer();
+  }
+
+  /**
+  * Move buffered records to the spill file.
+  */
+  private void flushBuffer() throws IOException{
+
+    if (spill == null){
+      spillFile = File.createTempFile("jspider-graph", ".bin", spillDir);
+      spillFile.deleteOnExit();
+      spill = new BufferedOutputStream(new FileOutputStream(spillFile), 64 * 1024);
+    }
+    buffer.writeTo(spill);
+    buffer.reset();
+  }
+
+  /**
+  * Callback used to walk the adjacency records.
+  */
+  private interface RecordVisitor{
+    void visit(int src, int[] targets, int count) throws IOException;
+  }
+
+  /**
+  * Decode all adjacency records, spilled ones first, and pass them to the visitor.
+  */
+  private void forEachRecord(RecordVisitor visitor) throws IOException{
+
+    int[] targets = new int[64];
+    if (spill != null){
+      spill.flush();
+      try (InputStream in = new BufferedInputStream(new FileInputStream(spillFile), 64 * 1024)){
+        targets = readRecords(in, visitor, targets);
+      }
+    }
+    readRecords(new ByteArrayInputStream(buffer.toByteArray()), visitor, targets);
+  }
+
+  private int[] readRecords(InputStream in, RecordVisitor visitor, int[] targets) throws IOException{
+
+    int src;
+    while ((src = readVarint(in)) != -1){
+      int count = readVarint(in);
+      if (count > targets.length)
+        targets = new int[Math.max(count, targets.length * 2)];
+      int prev = 0;
+      for (int i = 0; i < count; i++){
+        prev += readVarint(in);
+        targets[i] = prev;
+      }
+      visitor.visit(src, targets, count);
+    }
+    return targets;
+  }
+
+  /**
+  * Export the node table as {@code id<TAB>url} lines.
+  * @param path Output file.
+  * @throws IOException on write error.
+  */
+  public synchronized void exportNodes(String path) throws IOException{
+
+    int nodeCount = store.size();
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(path))){
+      for (int i = 0; i < nodeCount; i++)
+        writer.write(i + "\t" + store.get(i) + "\n");
+    }
+  }
+
+  /**
+  * Export the edges as {@code src<TAB>dst} lines of node IDs.
+  * @param path Output file.
+  * @throws IOException on write error.
+  */
+  public synchronized void exportEdgeList(String path) throws IOException{
+
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(path))){
+      forEachRecord((src, targets, count) -> {
+        for (int i = 0; i < count; i++)
+          writer.write(src + "\t" + targets[i] + "\n");
+      });
+    }
+  }
+
+  /**
+  * Export the graph in a compressed sparse row (CSR) binary format. All values are big-endian:
+  * {@code int magic, int version, int nodeCount, long edgeCount, long[nodeCount+1] offsets, int[edgeCount] targets}.
+  * The targets of node {@code n} are at indexes {@code offsets[n]} to {@code offsets[n+1]-1}.
+  * @param path Output file.
+  * @throws IOException on write error.
+  */
+  public synchronized void exportCSR(String path) throws IOException{
+
+    int nodeCount = store.size();
+    long[] offsets = new long[nodeCount + 1];
+    forEachRecord((src, targets, count) -> offsets[src+1] += count);
+    for (int i = 0; i < nodeCount; i++)
+      offsets[i+1] += offsets[i];
+    long header = 4 + 4 + 4 + 8 + (8L * (nodeCount + 1));
+    try (RandomAccessFile file = new RandomAccessFile(path, "rw")){
+      file.setLength(0);
+      DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.getFD()), 64 * 1024));
+      dos.writeInt(CSR_MAGIC);
+      dos.writeInt(CSR_VERSION);
+      dos.writeInt(nodeCount);
+      dos.writeLong(edgeCount);
+      for (long offset : offsets)
+        dos.writeLong(offset);
+      dos.flush();
+      // Place each record's targets at its node's cursor, records of a node may not be contiguous.
+      FileChannel channel = file.getChannel();
+      long[] cursor = Arrays.copyOf(offsets, nodeCount);
+      forEachRecord((src, targets, count) -> {
+        ByteBuffer buf = ByteBuffer.allocate(count * 4);
+        for (int i = 0; i < count; i++)
+          buf.putInt(targets[i]);
+        buf.flip();
+        long pos = header + (cursor[src] * 4);
+        while (buf.hasRemaining())
+          pos += channel.write(buf, pos);
+        cursor[src] += count;
+      });
+    }
+  }
+
+  /**
+  * Close the spill stream and delete the spill file.
+  */
+  public synchronized void close(){
+
+    if (spill != null){
+      try{
+        spill.close();
+      }catch(IOException ignored){}
+      spillFile.delete();
+      spill = null;
+    }
+    buffer.reset();
+  }
+
+  private static void writeVarint(OutputStream out, int value){
+
+    try{
+      while ((value & ~0x7F) != 0){
+        out.write((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      out.write(value);
+    }catch(IOException ignored){} // ByteArrayOutputStream never throws.
+  }
+
+  private static int readVarint(InputStream in) throws IOException{
+
+    int value = 0;
+    int shift = 0;
+    int b;
+    while ((b = in.read()) != -1){
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+        return value;
+      shift += 7;
+    }
+    if (shift > 0)
+      throw new EOFException("Truncated link graph record");
+    return -1;
+  }
+}
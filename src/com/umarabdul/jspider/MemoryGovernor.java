@@ -0,0 +1,251 @@
+package com.umarabdul.jspider;
+
+import java.io.Closeable;
+import java.lang.management.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import javax.management.*;
+
+
+/**
+* Watches heap usage and GC pressure for JSpider, mapping them to a pressure level the spider responds to.
+* Heap usage is measured after collections, from the heap pools' collection usage, so it reflects live data
+* rather than garbage waiting to be collected. GC pressure is the fraction of wall time spent collecting over
+* the last 5 seconds, so a single long pause doesn't read as sustained load. The heap is polled every 500ms,
+* and immediately when the JVM reports a pool crossing its collection usage threshold; those extra polls only
+* refresh the heap usage. The level rises as soon as a threshold is crossed, except for level 3, whose
+* responses can't be undone: it needs heap usage past its threshold, or GC load past its threshold on 3
+* polls in a row with heap usage past level 1's. The level drops one step at a time once usage is 5% below the threshold of the current
+* level, so responses don't flap.
+*
+* <pre>
+* Level  Heap after GC  GC time  Spider's response
+*   1        60%          10%    Slow link admission, trim the status queue
+*   2        75%          20%    Spill the URL queues to disk
+*   3        90%          30%    Drop deprioritized URLs, halve the workers
+* </pre>
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class MemoryGovernor implements Runnable, Closeable, NotificationListener{
+
+  public static final int NORMAL = 0;
+  public static final int ELEVATED = 1;
+  public static final int HIGH = 2;
+  public static final int CRITICAL = 3;
+  private static final double[] HEAP_LEVELS = {0.60, 0.75, 0.90}; // Heap used after GC, per level.
+  private static final double[] GC_LEVELS = {0.10, 0.20, 0.30}; // Fraction of time in GC, per level.
+  private static final double HYSTERESIS = 0.05;
+  private static final long INTERVAL = 500; // Poll interval, in milliseconds.
+  private static final long WINDOW = 5000; // GC load window, in milliseconds.
+  private static final int CONFIRM = 3; // Polls in a row GC load alone must be critical for.
+
+  private JSpider spider;
+  private volatile int level;
+  private volatile boolean closed;
+  private long[] gcSamples; // Total GC time at the polls of the window, a ring buffer.
+  private long[] timeSamples; // Time of the polls of the window.
+  private int sample; // Index of the oldest sample.
+  private int criticalPolls; // Polls in a row with critical GC load.
+  private double heapUsage; // Last heap usage after GC, 0 to 1.
+  private double gcLoad; // Last fraction of time spent in GC, 0 to 1.
+  private Thread thread;
+  private ArrayList<MemoryPoolMXBean> thresholds; // Pools whose collection usage threshold was set by this governor.
+
+  /**
+  * MemoryGovernor's constructor.
+  * @param spider Spider notified of pressure level changes.
+  */
+  public MemoryGovernor(JSpider spider){
+
+    this.spider = spider;
+    level = NORMAL;
+    closed = false;
+  }
+
+  /**
+  * Start watching the heap on a daemon thread.
+  */
+  public void start(){
+
+    gcSamples = new long[(int)(WINDOW / INTERVAL) + 1];
+    timeSamples = new long[gcSamples.length];
+    Arrays.fill(gcSamples, gcTime());
+    Arrays.fill(timeSamples, System.currentTimeMillis());
+    sample = 0;
+    criticalPolls = 0;
+    thresholds = new ArrayList<MemoryPoolMXBean>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+      if (isOldGen(pool) && pool.getUsage().getMax() > 0 &&
+          pool.getCollectionUsageThreshold() == 0){ // Not set by the application or another spider.
+        pool.setCollectionUsageThreshold((long)(pool.getUsage().getMax() * HEAP_LEVELS[0]));
+        thresholds.add(pool);
+      }
+    }
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    if (memory instanceof NotificationEmitter)
+      ((NotificationEmitter)memory).addNotificationListener(this, null, null);
+    thread = new Thread(this, "JSpider-memory");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+  * Poll the heap until closed.
+  */
+  @Override
+  public void run(){
+
+    long next = System.currentTimeMillis();
+    while (!(closed)){
+      long now = System.currentTimeMillis();
+      boolean timed = (now >= next); // False when woken by a notification.
+      if (timed)
+        next = now + INTERVAL;
+      poll(timed);
+      try{
+        synchronized(this){
+          wait(Math.max(1, next - System.currentTimeMillis()));
+        }
+      }catch(InterruptedException e){
+        return;
+      }
+    }
+  }
+
+  /**
+  * Wake the poller when a heap pool crosses its collection usage threshold.
+  */
+  @Override
+  public void handleNotification(Notification notification, Object handback){
+
+    if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())){
+      synchronized(this){
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+  * Measure the heap and GC load, and notify the spider if the pressure level changed.
+  * @param timed {@code true} for a poll of the regular interval, which also updates the GC load.
+  */
+  private void poll(boolean timed){
+
+    if (timed){
+      long now = System.currentTimeMillis();
+      long gc = gcTime();
+      // Over the whole window even at startup, when fewer samples were taken.
+      gcLoad = (double)(gc - gcSamples[sample]) / Math.max(WINDOW, now - timeSamples[sample]);
+      gcSamples[sample] = gc;
+      timeSamples[sample] = now;
+      sample = (sample + 1) % gcSamples.length;
+      criticalPolls = (gcLoad >= GC_LEVELS[CRITICAL - 1] ? criticalPolls + 1 : 0);
+    }
+    heapUsage = heapUsage();
+    int target = NORMAL;
+    for (int i = 0; i < HEAP_LEVELS.length; i++){
+      if (heapUsage >= HEAP_LEVELS[i] || gcLoad >= GC_LEVELS[i])
+        target = i + 1;
+    }
+    if (target == CRITICAL && heapUsage < HEAP_LEVELS[CRITICAL - 1] && (criticalPolls < CONFIRM || heapUsage < HEAP_LEVELS[0]))
+      target = HIGH; // GC load alone, not sustained or not from live data.
+    int current = level;
+    if (target < current){
+      // Step down only well below the current level's thresholds.
+      if (heapUsage < HEAP_LEVELS[current - 1] - HYSTERESIS && gcLoad < GC_LEVELS[current - 1] - HYSTERESIS)
+        target = current - 1;
+      else
+        target = current;
+    }
+    if (target != current){
+      level = target;
+      spider.onMemoryPressure(target, String.format("heap %.0f%% after GC, %.0f%% of time in GC", heapUsage * 100, gcLoad * 100));
+    }
+  }
+
+  /**
+  * Obtain the highest old generation usage after GC, falling back to the current heap usage.
+  */
+  private static double heapUsage(){
+
+    double usage = -1;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+      if (!(isOldGen(pool)))
+        continue;
+      MemoryUsage after = pool.getCollectionUsage();
+      if (after != null && after.getMax() > 0)
+        usage = Math.max(usage, (double)after.getUsed() / after.getMax());
+    }
+    if (usage < 0){
+      MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+      usage = (heap.getMax() > 0 ? (double)heap.getUsed() / heap.getMax() : 0);
+    }
+    return usage;
+  }
+
+  /**
+  * Check if a pool holds long-lived objects. Young pools (eden, survivor) support collection usage
+  * thresholds but not usage thresholds, and are full or empty after a collection by design.
+  */
+  private static boolean isOldGen(MemoryPoolMXBean pool){
+    return (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported() && pool.isCollectionUsageThresholdSupported());
+  }
+
+  private static long gcTime(){
+
+    long total = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      total += Math.max(0, gc.getCollectionTime());
+    return total;
+  }
+
+  /**
+  * Obtain the current pressure level.
+  * @return {@code NORMAL}, {@code ELEVATED}, {@code HIGH} or {@code CRITICAL}.
+  */
+  public int getLevel(){
+    return level;
+  }
+
+  /**
+  * Obtain the heap usage after GC measured at the last poll.
+  * @return Heap usage, 0 to 1.
+  */
+  public double getHeapUsage(){
+    return heapUsage;
+  }
+
+  /**
+  * Obtain the fraction of time spent in GC over the last 5 seconds.
+  * @return GC load, 0 to 1.
+  */
+  public double getGcLoad(){
+    return gcLoad;
+  }
+
+  /**
+  * Stop watching the heap, and unset the collection usage thresholds set by {@code start()}.
+  */
+  @Override
+  public void close(){
+
+    closed = true;
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    try{
+      if (memory instanceof NotificationEmitter)
+        ((NotificationEmitter)memory).removeNotificationListener(this);
+    }catch(ListenerNotFoundException ignored){}
+    if (thresholds != null){
+      for (MemoryPoolMXBean pool : thresholds) // The thresholds are JVM-wide, put back the unset value.
+        pool.setCollectionUsageThreshold(0);
+      thresholds = null;
+    }
+    synchronized(this){
+      notifyAll();
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package com.umarabdul.jspider;
+
+import java.util.*;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+
+/**
+* A page fetched and parsed by {@link PageFetcher}.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class Page{
+
+  private String url; // Requested URL.
+  private String finalUrl; // URL after redirects.
+  private int statusCode;
+  private String contentType;
+  private Document document;
+  private int size; // Bytes of body read.
+  private boolean truncated; // Body was cut at the size limit.
+  private long latency; // Time taken to fetch and parse the page, in milliseconds.
+  private String text; // Body of script and JSON responses, which are not parsed as HTML.
+
+  /**
+  * Page's constructor.
+  * @param url Requested URL.
+  * @param finalUrl URL after redirects.
+  * @param statusCode HTTP status code.
+  * @param contentType Value of the Content-Type header, may be null.
+  * @param document Parsed document.
+  * @param size Bytes of body read.
+  * @param truncated {@code true} if the body was cut at the size limit.
+  * @param latency Fetch time, in milliseconds.
+  */
+  public Page(String url, String finalUrl, int statusCode, String contentType, Document document, int size, boolean truncated, long latency){
+
+    this.url = url;
+    this.finalUrl = finalUrl;
+    this.statusCode = statusCode;
+    this.contentType = contentType;
+    this.document = document;
+    this.size = size;
+    this.truncated = truncated;
+    this.latency = latency;
+    text = null;
+  }
+
+  /**
+  * Obtain the requested URL.
+  * @return Requested URL.
+  */
+  public String getURL(){
+    return url;
+  }
+
+  /**
+  * Obtain the URL of the page after redirects.
+  * @return Final URL.
+  */
+  public String getFinalURL(){
+    return finalUrl;
+  }
+
+  /**
+  * Obtain the HTTP status code of the response.
+  * @return Status code.
+  */
+  public int getStatusCode(){
+    return statusCode;
+  }
+
+  /**
+  * Obtain the Content-Type of the response.
+  * @return Content type, {@code null} if not sent by the server.
+  */
+  public String getContentType(){
+    return contentType;
+  }
+
+  /**
+  * Obtain the parsed document.
+  * @return Parsed document.
+  */
+  public Document getDocument(){
+    return document;
+  }
+
+  /**
+  * Obtain the number of body bytes read.
+  * @return Body size, in bytes.
+  */
+  public int getSize(){
+    return size;
+  }
+
+  /**
+  * Check if the body was cut at the size limit, in which case only the start of the page was parsed.
+  * @return {@code true/false}.
+  */
+  public boolean isTruncated(){
+    return truncated;
+  }
+
+  /**
+  * Obtain the time taken to fetch and parse the page.
+  * @return Latency, in milliseconds.
+  */
+  public long getLatency(){
+    return latency;
+  }
+
+  /**
+  * Obtain the body of a script or JSON response. Such responses are accepted when script link
+  * discovery is enabled, and their document is empty.
+  * @return Body text, {@code null} for HTML pages.
+  */
+  public String getText(){
+    return text;
+  }
+
+  void setText(String text){
+    this.text = text;
+  }
+
+  /**
+  * Extract absolute URLs from the page. Uses the same categories and selectors as {@code JBrowser.getURLs()}.
+  * @return HashMap of URL category ("href", "img", "js" and "css") to URLs.
+  */
+  public HashMap<String, ArrayList<String>> getURLs(){
+
+    HashMap<String, ArrayList<String>> urls = new HashMap<String, ArrayList<String>>();
+    urls.put("href", collect("a[href]", "href"));
+    urls.put("img", collect("img[src~=(?i)\\.(png|jpg|jpeg|gif)]", "src"));
+    urls.put("js", collect("script[src~=(?i)\\.js]", "src"));
+    urls.put("css", collect("link[type=text/css]", "href"));
+    return urls;
+  }
+
+  private ArrayList<String> collect(String query, String attr){
+
+    ArrayList<String> list = new ArrayList<String>();
+    for (Element e : document.select(query)){
+      String url = e.absUrl(attr);
+      if (url.length() > 0)
+        list.add(url);
+    }
+    return list;
+  }
+}
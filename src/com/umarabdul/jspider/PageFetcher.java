@@ -0,0 +1,259 @@
+package com.umarabdul.jspider;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import org.jsoup.Jsoup;
+import org.jsoup.Connection;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.jsoup.nodes.Document;
+
+
+/**
+* Fetches and parses pages for JSpider's workers.
+* Unlike JBrowser, failures are reported with their kind and HTTP status code,
+* which the adaptive concurrency control needs to tell overload apart from broken links.
+* Responses are checked against a content type allow-list and size limit on their headers,
+* before the body is downloaded. Bodies without a usable Content-Length are read up to the
+* size limit and the rest is dropped, so the memory a worker spends on a page is bounded.
+* Cookies set by responses are stored in the given cookie jar, and sent with later requests.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class PageFetcher{
+
+  private static final int PEEK_SIZE = 512; // Bytes looked at when sniffing a body.
+  private static final byte[][] MAGICS = { // Signatures of PDF, zip, gzip, PNG, GIF, JPEG and ELF files.
+    {'%', 'P', 'D', 'F'}, {'P', 'K', 3, 4}, {(byte)0x1F, (byte)0x8B}, {(byte)0x89, 'P', 'N', 'G'},
+    {'G', 'I', 'F', '8'}, {(byte)0xFF, (byte)0xD8, (byte)0xFF}, {0x7F, 'E', 'L', 'F'}
+  };
+
+  private HashMap<String, String> headers;
+  private Map<String, String> cookies; // Cookie jar, shared with the spider's other fetchers.
+  private HashMap<String, String> proxy;
+  private int timeout;
+  private int maxBodySize; // Max bytes of body to read, 0 for no limit.
+  private String[] contentTypes; // Accepted content types (prefix matched), empty to accept all.
+  private boolean sniff; // Reject bodies whose first bytes look binary.
+  private boolean scripts; // Accept script and JSON responses as text pages.
+
+  /**
+  * PageFetcher's constructor.
+  * @param headers Request headers.
+  * @param cookies Cookie jar, updated with response cookies. Must be safe for concurrent use if shared.
+  * @param proxy Proxy "host" and "port", empty for a direct connection.
+  * @param timeout Default read timeout, in milliseconds.
+  */
+  public PageFetcher(HashMap<String, String> headers, Map<String, String> cookies, HashMap<String, String> proxy, int timeout){
+
+    this.headers = headers;
+    this.cookies = cookies;
+    this.proxy = proxy;
+    this.timeout = timeout;
+    maxBodySize = 2 * 1024 * 1024;
+    contentTypes = new String[]{"text/html", "application/xhtml+xml"};
+    sniff = false;
+    scripts = false;
+  }
+
+  /**
+  * Set the max number of body bytes read per page. Larger bodies are skipped if announced
+  * by Content-Length, and truncated otherwise.
+  * @param maxBodySize Max body size in bytes, 0 for no limit.
+  */
+  public void setMaxBodySize(int maxBodySize){
+    this.maxBodySize = Math.max(0, maxBodySize);
+  }
+
+  /**
+  * Set the content types of responses to parse. Matching is case-insensitive on the start of the
+  * Content-Type header, responses without the header are always parsed.
+  * @param contentTypes Accepted content types, an empty array to accept all.
+  */
+  public void setContentTypes(String[] contentTypes){
+    this.contentTypes = contentTypes;
+  }
+
+  /**
+  * Peek at the first bytes of every body, and reject it without reading the rest if it looks binary.
+  * Catches files served with a wrong or missing Content-Type.
+  * @param flag {@code true/false}.
+  */
+  public void setSniff(boolean flag){
+    sniff = flag;
+  }
+
+  /**
+  * Accept JavaScript and JSON responses whatever the content type allow-list says. Their body is
+  * returned as the page's text, with an empty document, for link discovery in scripts.
+  * @param flag {@code true/false}.
+  */
+  public void setScripts(boolean flag){
+    scripts = flag;
+  }
+
+  /**
+  * Fetch and parse a page using the default timeout.
+  * @param url URL of the page.
+  * @return The fetched page.
+  * @throws FetchException on failure.
+  */
+  public Page fetch(String url) throws FetchException{
+    return fetch(url, timeout);
+  }
+
+  /**
+  * Fetch and parse a page.
+  * @param url URL of the page.
+  * @param timeout Read timeout, in milliseconds.
+  * @return The fetched page.
+  * @throws FetchException on failure.
+  */
+  public Page fetch(String url, int timeout) throws FetchException{
+
+    long stime = System.currentTimeMillis();
+    Connection conn = Jsoup.connect(url).timeout(timeout).followRedirects(true).ignoreHttpErrors(true).ignoreContentType(true).maxBodySize(0);
+    if (proxy.size() > 0)
+      conn.proxy(proxy.get("host"), Integer.parseInt(proxy.get("port")));
+    if (headers.size() > 0)
+      conn.headers(headers);
+    if (cookies.size() > 0)
+      conn.cookies(cookies);
+    Connection.Response res = null;
+    InputStream in = null; // Body stream, taken once: jsoup refuses a second call.
+    try{
+      res = conn.execute(); // Reads the headers only.
+      if (res.cookies().size() > 0)
+        cookies.putAll(res.cookies());
+      if (res.statusCode() >= 400)
+        throw new FetchException(FetchException.Kind.HTTP, res.statusCode(), String.format("HTTP %d: %s", res.statusCode(), url));
+      String contentType = res.contentType();
+      boolean script = (scripts && isScriptType(contentType));
+      if (!(script || acceptsType(contentType)))
+        throw new FetchException(FetchException.Kind.TYPE, res.statusCode(), String.format("Content type not accepted (%s): %s", contentType, url));
+      long length = -1;
+      try{
+        length = Long.parseLong(res.header("Content-Length"));
+      }catch(NumberFormatException e){}
+      if (maxBodySize > 0 && length > maxBodySize)
+        throw new FetchException(FetchException.Kind.CONTENT, res.statusCode(), String.format("Body too large (%d bytes): %s", length, url));
+      String finalUrl = res.url().toString();
+      boolean[] truncated = new boolean[1];
+      in = res.bodyStream();
+      byte[] body = readBody(in, truncated);
+      if (body == null)
+        throw new FetchException(FetchException.Kind.TYPE, res.statusCode(), String.format("Binary body (%s): %s", contentType, url));
+      if (script){
+        Page page = new Page(url, finalUrl, res.statusCode(), contentType, Document.createShell(finalUrl), body.length, truncated[0], System.currentTimeMillis() - stime);
+        page.setText(new String(body, (res.charset() == null ? "UTF-8" : res.charset())));
+        return page;
+      }
+      Document doc = Jsoup.parse(new ByteArrayInputStream(body), res.charset(), finalUrl);
+      return new Page(url, finalUrl, res.statusCode(), contentType, doc, body.length, truncated[0], System.currentTimeMillis() - stime);
+    }catch(FetchException e){
+      throw e;
+    }catch(Exception e){
+      throw classify(url, e);
+    }finally{
+      try{
+        // Releases the connection, whether or not the body was read.
+        if (in != null)
+          in.close();
+        else if (res != null)
+          res.bodyStream().close();
+      }catch(Exception ignored){}
+    }
+  }
+
+  /**
+  * Check a Content-Type header against the allow-list.
+  */
+  private boolean acceptsType(String contentType){
+
+    if (contentType == null || contentTypes.length == 0)
+      return true;
+    contentType = contentType.toLowerCase();
+    for (String type : contentTypes){
+      if (contentType.startsWith(type.toLowerCase()))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+  * Check if a Content-Type header is of JavaScript or JSON.
+  */
+  private static boolean isScriptType(String contentType){
+
+    if (contentType == null)
+      return false;
+    contentType = contentType.toLowerCase();
+    return (contentType.contains("javascript") || contentType.contains("ecmascript") || contentType.contains("json"));
+  }
+
+  /**
+  * Read a response body, stopping at the size limit.
+  * @param in Body stream.
+  * @param truncated Set to {@code true} if data was left unread.
+  * @return Body bytes, {@code null} if sniffing is enabled and the body looks binary.
+  */
+  private byte[] readBody(InputStream in, boolean[] truncated) throws IOException{
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+    byte[] buf = new byte[8192];
+    int limit = (maxBodySize > 0 ? maxBodySize : Integer.MAX_VALUE - 8);
+    int len;
+    boolean peeked = !(sniff);
+    while (out.size() < limit && (len = in.read(buf, 0, Math.min(buf.length, limit - out.size()))) != -1){
+      out.write(buf, 0, len);
+      if (!(peeked) && out.size() >= PEEK_SIZE){
+        peeked = true;
+        if (looksBinary(out.toByteArray()))
+          return null;
+      }
+    }
+    if (!(peeked) && looksBinary(out.toByteArray()))
+      return null;
+    if (out.size() >= limit && in.read() != -1)
+      truncated[0] = true;
+    return out.toByteArray();
+  }
+
+  /**
+  * Check the first bytes of a body for NUL bytes and the signatures of common binary formats.
+  */
+  static boolean looksBinary(byte[] data){
+
+    int len = Math.min(data.length, PEEK_SIZE);
+    for (byte[] magic : MAGICS){
+      if (len >= magic.length && Arrays.equals(Arrays.copyOf(data, magic.length), magic))
+        return true;
+    }
+    for (int i = 0; i < len; i++){
+      if (data[i] == 0)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+  * Map an exception thrown by jsoup to a FetchException. Only failures to connect are CONNECT; errors on an
+  * established connection, e.g. a reset or broken pipe, are IO and retried without marking the host unreachable.
+  */
+  static FetchException classify(String url, Exception e){
+
+    String msg = e.getClass().getSimpleName() + ": " + e.getMessage();
+    if (e instanceof SocketTimeoutException)
+      return new FetchException(FetchException.Kind.TIMEOUT, 0, msg);
+    if (e instanceof UnknownHostException)
+      return new FetchException(FetchException.Kind.DNS, 0, msg);
+    if (e instanceof ConnectException || e instanceof NoRouteToHostException)
+      return new FetchException(FetchException.Kind.CONNECT, 0, msg);
+    if (e instanceof UnsupportedMimeTypeException)
+      return new FetchException(FetchException.Kind.TYPE, 0, msg);
+    return new FetchException(FetchException.Kind.IO, 0, msg);
+  }
+}
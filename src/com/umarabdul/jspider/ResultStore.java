@@ -0,0 +1,465 @@
+package com.umarabdul.jspider;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+
+/**
+* Append-only on-disk store of crawl records, with a sorted URL index for prefix and status lookups.
+* Records are appended to {@code <prefix>.records} while crawling, each one length-prefixed so a crash
+* only loses the last partial record, dropped when the index is rebuilt. Closing the store writes {@code <prefix>.idx}: the record offsets
+* sorted by URL, then the record offsets of each status code. Lookups binary search the memory-mapped index
+* and read the few records they need, so they take milliseconds on multi-million URL crawls.
+* An index missing or older than its records file is rebuilt on open. The writer holds a lock on the records
+* file, so a store can be queried while it is being written: the index then covers the records written so far
+* and is kept in a temporary file. A partial last record left by a crash is only truncated when no writer holds
+* the lock.
+*
+* <pre>
+* try (ResultStore store = ResultStore.open("crawl")){
+*   for (CrawlRecord r : store.findPrefix("https://example.com/admin", 100))
+*     System.out.println(r);
+* }
+* </pre>
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class ResultStore implements Closeable{
+
+  private static final int MAGIC = 0x4A535249; // "JSRI"
+  private static final int MAX_TEXT = 4096; // Max chars of a text field, longer ones are cut.
+  private static final int MAX_RECORD = 65536; // Max bytes of a record, larger lengths are garbage.
+
+  private String prefix;
+  private boolean writable;
+  private DataOutputStream out; // Records writer, write mode only.
+  private int count; // Number of records.
+  private FileChannel records; // Records reader, read mode only.
+  private LongBuffer byUrl; // Record offsets sorted by URL.
+  private TreeMap<Integer, LongBuffer> byStatus; // Record offsets of each status code, in append order.
+
+  private ResultStore(String prefix){
+    this.prefix = prefix;
+  }
+
+  /**
+  * Create a new store for writing, replacing any store with the same prefix.
+  * @param prefix Path prefix of the store files.
+  * @return The store.
+  * @throws IOException on IO error.
+  */
+  public static ResultStore create(String prefix) throws IOException{
+
+    ResultStore store = new ResultStore(prefix);
+    FileChannel ch = FileChannel.open(Paths.get(prefix + ".records"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    try{
+      if (ch.tryLock() == null)
+        throw new IOException("Store is being written: " + prefix);
+    }catch(IOException | OverlappingFileLockException e){
+      ch.close();
+      throw (e instanceof IOException ? (IOException)e : new IOException("Store is being written: " + prefix));
+    }
+    ch.truncate(0); // Only once locked, a live store is left alone.
+    Files.deleteIfExists(Paths.get(prefix + ".idx"));
+    store.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 65536)); // Closing it releases the lock.
+    store.writable = true;
+    store.count = 0;
+    return store;
+  }
+
+  /**
+  * Open a store for querying, rebuilding its index if missing or out of date.
+  * @param prefix Path prefix of the store files.
+  * @return The store.
+  * @throws IOException on IO error, or if the records file does not exist.
+  */
+  public static ResultStore open(String prefix) throws IOException{
+
+    ResultStore store = new ResultStore(prefix);
+    Path idx = Paths.get(prefix + ".idx");
+    store.records = FileChannel.open(Paths.get(prefix + ".records"), StandardOpenOption.READ);
+    if (store.loadIndex(idx, true))
+      return store;
+    boolean loaded;
+    if (recover(prefix)){
+      loaded = store.loadIndex(idx, true);
+    }else{
+      // Being written: index the complete records so far, leaving the files alone.
+      Path dir = Paths.get(prefix).toAbsolutePath().getParent();
+      Path tmp = Files.createTempFile(dir, Paths.get(prefix).getFileName().toString() + ".", ".idx.tmp");
+      try{
+        writeIndex(prefix, tmp);
+        loaded = store.loadIndex(tmp, false); // The mapping outlives the file.
+      }finally{
+        Files.deleteIfExists(tmp);
+      }
+    }
+    if (!(loaded)){
+      store.close();
+      throw new IOException("Corrupt index: " + idx);
+    }
+    return store;
+  }
+
+  /**
+  * Rebuild the index of a store no writer holds, dropping a partial last record.
+  * @return {@code false} if the store is being written.
+  */
+  private static boolean recover(String prefix) throws IOException{
+
+    try (FileChannel ch = FileChannel.open(Paths.get(prefix + ".records"), StandardOpenOption.READ, StandardOpenOption.WRITE)){
+      FileLock lock;
+      try{
+        lock = ch.tryLock();
+      }catch(OverlappingFileLockException e){
+        return false; // Written by this JVM.
+      }
+      if (lock == null)
+        return false;
+      long length = writeIndex(prefix, Paths.get(prefix + ".idx"));
+      if (ch.size() != length)
+        ch.truncate(length);
+      return true; // Closing the channel releases the lock.
+    }
+  }
+
+  /**
+  * Append a record. Write mode only.
+  * @param record Record to append.
+  * @throws IOException on IO error.
+  */
+  public synchronized void append(CrawlRecord record) throws IOException{
+
+    if (!(writable))
+      throw new IllegalStateException("Store is read-only");
+    ByteArrayOutputStream buf = new ByteArrayOutputStream(256);
+    DataOutputStream dos = new DataOutputStream(buf);
+    dos.writeUTF(cut(record.getURL()));
+    dos.writeUTF(cut(record.getParent()));
+    dos.writeUTF(cut(record.getContentType()));
+    dos.writeUTF(cut(record.getError()));
+    dos.writeLong(record.getTimestamp());
+    dos.writeInt(record.getStatus());
+    dos.writeInt(record.getSize());
+    dos.writeInt(record.getLatency());
+    dos.writeInt(record.getDepth());
+    out.writeInt(buf.size());
+    buf.writeTo(out);
+    count++;
+  }
+
+  private static String cut(String text){
+    return (text.length() > MAX_TEXT ? text.substring(0, MAX_TEXT) : text);
+  }
+
+  /**
+  * Obtain the number of records.
+  * @return Number of records.
+  */
+  public synchronized int size(){
+    return (byUrl == null ? count : byUrl.limit());
+  }
+
+  /**
+  * Find the latest record of a URL.
+  * @param url URL to look up.
+  * @return The record, null if the URL was not fetched.
+  * @throws IOException on IO error.
+  */
+  public synchronized CrawlRecord get(String url) throws IOException{
+
+    CrawlRecord latest = null;
+    for (int i = lowerBound(url); i < byUrl.limit(); i++){
+      CrawlRecord r = read(byUrl.get(i));
+      if (!(r.getURL().equals(url)))
+        break;
+      latest = r; // Offsets of a URL are in append order.
+    }
+    return latest;
+  }
+
+  /**
+  * Find the records of the URLs starting with a prefix, in URL order.
+  * @param urlPrefix URL prefix, e.g. {@code https://example.com/admin}.
+  * @param limit Max number of records, 0 for no limit.
+  * @return Matching records.
+  * @throws IOException on IO error.
+  */
+  public synchronized List<CrawlRecord> findPrefix(String urlPrefix, int limit) throws IOException{
+
+    ArrayList<CrawlRecord> found = new ArrayList<CrawlRecord>();
+    for (int i = lowerBound(urlPrefix); i < byUrl.limit() && (limit <= 0 || found.size() < limit); i++){
+      CrawlRecord r = read(byUrl.get(i));
+      if (!(r.getURL().startsWith(urlPrefix)))
+        break;
+      found.add(r);
+    }
+    return found;
+  }
+
+  /**
+  * Find the records with a status code, in append order.
+  * @param status HTTP status code, 0 for fetches without a response.
+  * @param limit Max number of records, 0 for no limit.
+  * @return Matching records.
+  * @throws IOException on IO error.
+  */
+  public synchronized List<CrawlRecord> findStatus(int status, int limit) throws IOException{
+
+    ArrayList<CrawlRecord> found = new ArrayList<CrawlRecord>();
+    LongBuffer offsets = byStatus.get(status);
+    for (int i = 0; offsets != null && i < offsets.limit() && (limit <= 0 || found.size() < limit); i++)
+      found.add(read(offsets.get(i)));
+    return found;
+  }
+
+  /**
+  * Count the records of each status code.
+  * @return Status code to number of records.
+  */
+  public synchronized Map<Integer, Integer> countByStatus(){
+
+    TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+    for (Map.Entry<Integer, LongBuffer> e : byStatus.entrySet())
+      counts.put(e.getKey(), e.getValue().limit());
+    return counts;
+  }
+
+  /**
+  * Find the first index position whose URL is not below a key.
+  */
+  private int lowerBound(String key) throws IOException{
+
+    int lo = 0, hi = byUrl.limit();
+    while (lo < hi){
+      int mid = (lo + hi) >>> 1;
+      if (readURL(byUrl.get(mid)).compareTo(key) < 0)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return lo;
+  }
+
+  private ByteBuffer readBytes(long offset) throws IOException{
+
+    ByteBuffer len = ByteBuffer.allocate(4);
+    readFully(len, offset);
+    ByteBuffer data = ByteBuffer.allocate(len.getInt(0));
+    readFully(data, offset + 4);
+    return data;
+  }
+
+  private void readFully(ByteBuffer buf, long offset) throws IOException{
+
+    while (buf.hasRemaining()){
+      if (records.read(buf, offset + buf.position()) == -1)
+        throw new EOFException("Truncated record at " + offset);
+    }
+    buf.flip();
+  }
+
+  private String readURL(long offset) throws IOException{
+
+    ByteBuffer data = readBytes(offset);
+    return new DataInputStream(new ByteArrayInputStream(data.array())).readUTF();
+  }
+
+  private CrawlRecord read(long offset) throws IOException{
+    return decode(readBytes(offset).array());
+  }
+
+  private static CrawlRecord decode(byte[] data) throws IOException{
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+    String url = in.readUTF();
+    String parent = in.readUTF();
+    String contentType = in.readUTF();
+    String error = in.readUTF();
+    long timestamp = in.readLong();
+    return new CrawlRecord(url, parent, contentType, error, timestamp, in.readInt(), in.readInt(), in.readInt(), in.readInt());
+  }
+
+  /**
+  * Map an index, checking it covers the records file.
+  * @param path Index file.
+  * @param whole Require the index to cover the whole records file, not only its start.
+  * @return {@code false} if the index is missing or out of date.
+  */
+  private boolean loadIndex(Path path, boolean whole) throws IOException{
+
+    if (!(Files.exists(path)))
+      return false;
+    MappedByteBuffer map;
+    try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)){
+      map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+    }
+    if (map.limit() < 16 || map.getInt(0) != MAGIC)
+      return false;
+    long length = map.getLong(4);
+    if (whole ? length != records.size() : length > records.size())
+      return false;
+    int total = map.getInt(12);
+    int pos = 16;
+    byUrl = slice(map, pos, total);
+    pos += total * 8;
+    byStatus = new TreeMap<Integer, LongBuffer>();
+    int statuses = map.getInt(pos);
+    pos += 4;
+    for (int i = 0; i < statuses; i++){
+      int status = map.getInt(pos);
+      int n = map.getInt(pos + 4);
+      byStatus.put(status, slice(map, pos + 8, n));
+      pos += 8 + n * 8;
+    }
+    return true;
+  }
+
+  private static LongBuffer slice(MappedByteBuffer map, int pos, int count){
+
+    ByteBuffer dup = map.duplicate();
+    dup.position(pos);
+    dup.limit(pos + count * 8);
+    return dup.slice().asLongBuffer();
+  }
+
+  /**
+  * Scan a records file and write the index of its complete records. The records file is not modified.
+  * @param prefix Path prefix of the store files.
+  * @param target Index file to write.
+  * @return Length of the records file covered by the index.
+  */
+  private static long writeIndex(String prefix, Path target) throws IOException{
+
+    ArrayList<String> urls = new ArrayList<String>();
+    long[] offsets = new long[1024];
+    int[] statuses = new int[1024];
+    long length = 0;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(prefix + ".records"), 65536))){
+      while (true){
+        int len;
+        CrawlRecord r;
+        try{
+          len = in.readInt();
+          if (len < 16 || len > MAX_RECORD)
+            break; // Garbage left by a crash.
+          byte[] data = new byte[len];
+          in.readFully(data);
+          r = decode(data);
+        }catch(EOFException e){
+          break; // End of file, or a partial last record.
+        }
+        if (urls.size() == offsets.length){
+          offsets = Arrays.copyOf(offsets, offsets.length * 2);
+          statuses = Arrays.copyOf(statuses, statuses.length * 2);
+        }
+        offsets[urls.size()] = length;
+        statuses[urls.size()] = r.getStatus();
+        urls.add(r.getURL());
+        length += 4 + len;
+      }
+    }
+    int total = urls.size();
+    Integer[] order = new Integer[total];
+    for (int i = 0; i < total; i++)
+      order[i] = i;
+    Arrays.sort(order, (a, b) -> {
+      int c = urls.get(a).compareTo(urls.get(b));
+      return (c != 0 ? c : Integer.compare(a, b));
+    });
+    TreeMap<Integer, ArrayList<Integer>> groups = new TreeMap<Integer, ArrayList<Integer>>();
+    for (int i = 0; i < total; i++)
+      groups.computeIfAbsent(statuses[i], k -> new ArrayList<Integer>()).add(i);
+    Path tmp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString() + ".", ".tmp");
+    try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp.toFile()), 65536))){
+      dos.writeInt(MAGIC);
+      dos.writeLong(length);
+      dos.writeInt(total);
+      for (int i : order)
+        dos.writeLong(offsets[i]);
+      dos.writeInt(groups.size());
+      for (Map.Entry<Integer, ArrayList<Integer>> e : groups.entrySet()){
+        dos.writeInt(e.getKey());
+        dos.writeInt(e.getValue().size());
+        for (int i : e.getValue())
+          dos.writeLong(offsets[i]);
+      }
+    }catch(IOException e){
+      Files.deleteIfExists(tmp);
+      throw e;
+    }
+    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+    return length;
+  }
+
+  /**
+  * Close the store. In write mode, the records are flushed and the index is written.
+  * @throws IOException on IO error.
+  */
+  @Override
+  public synchronized void close() throws IOException{
+
+    if (writable){
+      writable = false;
+      out.close();
+      writeIndex(prefix, Paths.get(prefix + ".idx"));
+    }else if (records != null){
+      records.close();
+    }
+  }
+
+  /**
+  * Query a store from the command line.
+  * @param args Store prefix, command and argument.
+  * @throws IOException on IO error.
+  */
+  public static void main(String[] args) throws IOException{
+
+    String usage = "Usage: ResultStore <prefix> <command> [arg] [limit]\n"+
+                   "  Commands:\n"+
+                   "    stats                :  Number of records of each status code\n"+
+                   "    get <url>            :  Latest record of a URL\n"+
+                   "    prefix <url> [n]     :  Records of the URLs starting with a prefix\n"+
+                   "    status <code> [n]    :  Records with a status code, 0 for fetch errors\n"+
+                   "  Records are printed as: status, content type, size, latency, depth, timestamp, URL, parent, error.";
+    if (args.length < 2 || (!(args[1].equals("stats")) && args.length < 3)){
+      System.out.println(usage);
+      return;
+    }
+    int limit = (args.length > 3 ? Integer.parseInt(args[3]) : 0);
+    long stime = System.nanoTime();
+    try (ResultStore store = ResultStore.open(args[0])){
+      List<CrawlRecord> found = new ArrayList<CrawlRecord>();
+      switch (args[1]){
+        case "stats":
+          System.out.println(String.format("%d records", store.size()));
+          for (Map.Entry<Integer, Integer> e : store.countByStatus().entrySet())
+            System.out.println(String.format("%d\t%d", e.getKey(), e.getValue()));
+          return;
+        case "get":
+          CrawlRecord r = store.get(args[2]);
+          if (r != null)
+            found.add(r);
+          break;
+        case "prefix":
+          found = store.findPrefix(args[2], limit);
+          break;
+        case "status":
+          found = store.findStatus(Integer.parseInt(args[2]), limit);
+          break;
+        default:
+          System.out.println(usage);
+          return;
+      }
+      for (CrawlRecord r : found)
+        System.out.println(r);
+      System.err.println(String.format("[*] %d records in %.3f ms", found.size(), (System.nanoTime() - stime) / 1e6));
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.umarabdul.jspider;
+
+import java.util.*;
+
+
+/**
+* Holds URL IDs whose fetch failed until their backoff delay expires.
+* Delays grow exponentially with the attempt number and are jittered ("equal jitter")
+* so URLs that failed together are not retried together.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+class RetryQueue{
+
+  private PriorityQueue<long[]> queue; // Entries of {readyAt, id}, ordered by readyAt.
+  private HashMap<Integer, Integer> attempts; // Failed attempts per URL ID.
+  private long baseDelay; // Delay of the first retry, in milliseconds.
+  private long maxDelay; // Cap on the delay, in milliseconds.
+  private Random random;
+
+  RetryQueue(long baseDelay, long maxDelay){
+
+    queue = new PriorityQueue<long[]>((a, b) -> Long.compare(a[0], b[0]));
+    attempts = new HashMap<Integer, Integer>();
+    this.baseDelay = Math.max(1, baseDelay);
+    this.maxDelay = Math.max(this.baseDelay, maxDelay);
+    random = new Random();
+  }
+
+  /**
+  * Record a failed attempt and schedule a retry if attempts remain.
+  * @return {@code true} if a retry was scheduled.
+  */
+  boolean schedule(int id, int maxRetries, long now){
+
+    int failed = attempts.getOrDefault(id, 0) + 1;
+    if (failed > maxRetries){
+      attempts.remove(id);
+      return false;
+    }
+    attempts.put(id, failed);
+    long delay = Math.min(maxDelay, baseDelay << Math.min(failed - 1, 20));
+    delay = (delay / 2) + (long)(random.nextDouble() * (delay / 2));
+    queue.add(new long[]{now + delay, id});
+    return true;
+  }
+
+  /**
+  * Remove and return a URL ID whose delay has expired.
+  * @return URL ID, -1 if none is ready.
+  */
+  int poll(long now){
+
+    long[] head = queue.peek();
+    if (head == null || head[0] > now)
+      return -1;
+    queue.poll();
+    return (int)head[1];
+  }
+
+  /**
+  * Check if a URL has failed before, in which case it was already counted as crawled.
+  */
+  boolean isRetry(int id){
+    return attempts.containsKey(id);
+  }
+
+  /**
+  * Forget the attempts of a URL that succeeded.
+  */
+  void done(int id){
+    attempts.remove(id);
+  }
+
+  int size(){
+    return queue.size();
+  }
+
+  void clear(){
+    queue.clear();
+    attempts.clear();
+  }
+}
@@ -0,0 +1,106 @@
+package com.umarabdul.jspider;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.*;
+
+
+/**
+* Finds URL and path literals in JavaScript and JSON, for links that pages only assemble in scripts.
+* String literals are matched with precompiled patterns, no script is executed. Accepted literals are absolute
+* and protocol-relative URLs, paths starting with "/", "./" or "../", and relative paths ending with a common
+* page or data extension. Literals found in a script are cached by a hash of its content, so a bundle
+* shared by every page, or served under several URLs, is only scanned once.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class ScriptLinkExtractor{
+
+  private static final Pattern LITERAL = Pattern.compile(
+    "([\"'`])((?:https?:)?//[^\\s\"'`<>\\\\{}|^]{3,}|\\.{0,2}/[^\\s\"'`<>\\\\{}|^]+|[\\w\\-./]+\\.(?:html?|php\\d?|aspx?|jsp|json|xml|js)(?:\\?[^\\s\"'`<>\\\\{}|^]*)?)\\1");
+  private static final Pattern JUNK = Pattern.compile("^(?:/[gimsuy]*|/\\*.*|//\\s*)$|\\.\\.\\.|/\\*|\\*/|//$"); // Regex flags, comments, spread operators.
+  private static final int MAX_CACHED = 10000; // Scripts beyond this are scanned every time.
+
+  private ConcurrentHashMap<Long, String[]> cache; // Content hash to literals found.
+  private Set<String> fetched; // URLs of linked scripts already fetched.
+
+  /**
+  * ScriptLinkExtractor's constructor.
+  */
+  public ScriptLinkExtractor(){
+
+    cache = new ConcurrentHashMap<Long, String[]>();
+    fetched = ConcurrentHashMap.newKeySet();
+  }
+
+  /**
+  * Forget cached scripts, for a new crawl.
+  */
+  public void clear(){
+
+    cache.clear();
+    fetched.clear();
+  }
+
+  /**
+  * Mark a linked script as fetched.
+  * @param url URL of the script.
+  * @return {@code true} if the script was not fetched before.
+  */
+  public boolean markFetched(String url){
+    return fetched.add(url);
+  }
+
+  /**
+  * Find the URL literals of a script or JSON document, resolved against a base URL.
+  * @param script Script or JSON text.
+  * @param base URL to resolve relative literals against.
+  * @return Absolute URLs found.
+  */
+  public ArrayList<String> extract(String script, URL base){
+
+    ArrayList<String> urls = new ArrayList<String>();
+    for (String literal : literals(script)){
+      try{
+        urls.add(new URL(base, literal).toString());
+      }catch(MalformedURLException ignored){}
+    }
+    return urls;
+  }
+
+  /**
+  * Obtain the URL literals of a script, from the cache if it was scanned before.
+  * @param script Script or JSON text.
+  * @return Literals found.
+  */
+  public String[] literals(String script){
+
+    long key = hash(script);
+    String[] found = cache.get(key);
+    if (found != null)
+      return found;
+    LinkedHashSet<String> set = new LinkedHashSet<String>();
+    Matcher m = LITERAL.matcher(script.replace("\\/", "/"));
+    while (m.find()){
+      String literal = m.group(2);
+      if (literal.length() > 1 && !(JUNK.matcher(literal).find()))
+        set.add(literal);
+    }
+    found = set.toArray(new String[0]);
+    if (cache.size() < MAX_CACHED)
+      cache.put(key, found);
+    return found;
+  }
+
+  private static long hash(String text){
+
+    long h = 0xCBF29CE484222325L;
+    for (int i = 0; i < text.length(); i++)
+      h = (h ^ text.charAt(i)) * 0x100000001B3L;
+    return h ^ ((long)text.length() << 40);
+  }
+}
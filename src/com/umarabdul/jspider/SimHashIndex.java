@@ -0,0 +1,181 @@
+package com.umarabdul.jspider;
+
+import java.util.*;
+
+
+/**
+* Index of 64-bit SimHash fingerprints for finding near-duplicate pages.
+* A page's fingerprint is built from hashed 3-word shingles of its text, so pages that differ only by a
+* session ID, a date or a few words of boilerplate get fingerprints a few bits apart.
+* The fingerprint is split in four 16-bit bands. Two fingerprints within 3 bits of each other share at least
+* one band exactly, so a lookup only compares the fingerprints chained under each of the query's band values,
+* instead of the whole index. Lookups are best-effort: to bound their cost, only the latest {@code MAX_CHAIN}
+* fingerprints of each band value are compared, so on large crawls where many pages share a band value,
+* a near-duplicate of an older page can be missed.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class SimHashIndex{
+
+  public static final int MAX_DISTANCE = 3; // Largest Hamming distance the bands can find.
+  private static final int BANDS = 4;
+  private static final int MIN_FEATURES = 8; // Texts with fewer shingles are too short to fingerprint.
+  private static final int MAX_CHAIN = 256; // Max fingerprints compared per band, the latest ones.
+
+  private int maxDistance; // Max Hamming distance of near-duplicates.
+  private int[][] heads; // Per band, index of the last entry + 1 with each 16-bit band value.
+  private int[][] next; // Per band, index of the previous entry + 1 with the same band value.
+  private long[] prints; // Fingerprints.
+  private int[] ids; // Page IDs of the fingerprints.
+  private int size;
+
+  /**
+  * SimHashIndex's constructor.
+  * @param maxDistance Max Hamming distance of near-duplicates, at most {@code MAX_DISTANCE}.
+  */
+  public SimHashIndex(int maxDistance){
+
+    this.maxDistance = Math.max(0, Math.min(MAX_DISTANCE, maxDistance));
+    heads = new int[BANDS][1 << 16];
+    clear();
+  }
+
+  /**
+  * Remove all fingerprints.
+  */
+  public synchronized void clear(){
+
+    for (int[] head : heads)
+      Arrays.fill(head, 0);
+    next = new int[BANDS][1024];
+    prints = new long[1024];
+    ids = new int[1024];
+    size = 0;
+  }
+
+  /**
+  * Compute the SimHash fingerprint of a text.
+  * @param text Text to fingerprint.
+  * @return The fingerprint, 0 if the text is too short to fingerprint.
+  */
+  public static long fingerprint(String text){
+
+    String[] words = text.toLowerCase().split("[^\\p{L}\\p{N}]+");
+    int[] weights = new int[64];
+    int features = 0;
+    int count = 0; // Words seen.
+    long h1 = 0, h2 = 0; // Hashes of the two previous words.
+    for (String word : words){
+      if (word.length() == 0)
+        continue;
+      long h = hash(word);
+      if (++count >= 3){
+        long shingle = mix(h2 * 961 + h1 * 31 + h);
+        for (int bit = 0; bit < 64; bit++)
+          weights[bit] += (((shingle >>> bit) & 1) == 1 ? 1 : -1);
+        features++;
+      }
+      h2 = h1;
+      h1 = h;
+    }
+    if (features < MIN_FEATURES)
+      return 0;
+    long print = 0;
+    for (int bit = 0; bit < 64; bit++){
+      if (weights[bit] > 0)
+        print |= (1L << bit);
+    }
+    return print;
+  }
+
+  /**
+  * Find a near-duplicate of a fingerprint, adding the fingerprint if there is none.
+  * @param print Fingerprint of the page.
+  * @param id ID of the page.
+  * @return ID of the near-duplicate page, -1 if none (the fingerprint was added).
+  */
+  public synchronized int findOrAdd(long print, int id){
+
+    int near = find(print);
+    if (near == -1)
+      add(print, id);
+    return near;
+  }
+
+  /**
+  * Find a near-duplicate of a fingerprint, among the latest fingerprints of each of its band values.
+  * @param print Fingerprint to look up.
+  * @return ID of the near-duplicate page, -1 if none.
+  */
+  public synchronized int find(long print){
+
+    for (int band = 0; band < BANDS; band++){
+      int entry = heads[band][bandValue(print, band)];
+      for (int walked = 0; entry != 0 && walked < MAX_CHAIN; walked++){
+        if (Long.bitCount(prints[entry - 1] ^ print) <= maxDistance)
+          return ids[entry - 1];
+        entry = next[band][entry - 1];
+      }
+    }
+    return -1;
+  }
+
+  /**
+  * Add a fingerprint.
+  * @param print Fingerprint of the page.
+  * @param id ID of the page.
+  */
+  public synchronized void add(long print, int id){
+
+    if (size == prints.length){
+      prints = Arrays.copyOf(prints, size * 2);
+      ids = Arrays.copyOf(ids, size * 2);
+      for (int band = 0; band < BANDS; band++)
+        next[band] = Arrays.copyOf(next[band], size * 2);
+    }
+    prints[size] = print;
+    ids[size] = id;
+    for (int band = 0; band < BANDS; band++){
+      int value = bandValue(print, band);
+      next[band][size] = heads[band][value];
+      heads[band][value] = size + 1;
+    }
+    size++;
+  }
+
+  /**
+  * Obtain the number of fingerprints in the index.
+  * @return Number of fingerprints.
+  */
+  public synchronized int size(){
+    return size;
+  }
+
+  private static int bandValue(long print, int band){
+    return (int)((print >>> (band * 16)) & 0xFFFF);
+  }
+
+  private static long hash(String word){
+
+    long h = 0xCBF29CE484222325L;
+    for (int i = 0; i < word.length(); i++)
+      h = (h ^ word.charAt(i)) * 0x100000001B3L;
+    return h;
+  }
+
+  /**
+  * Murmur3's 64-bit finalizer, spreads shingle hashes over all bits.
+  */
+  private static long mix(long h){
+
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB93FE1AC2D53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -0,0 +1,283 @@
+package com.umarabdul.jspider;
+
+import java.net.URL;
+import java.util.*;
+
+
+/**
+* Learns URL templates online and enforces a crawl budget per template, for JSpider's admission of URLs.
+* A URL is split in tokens: the host, each path segment, then each query parameter name and value in
+* name order. Tokens with digits have their digit runs folded to "#", so {@code /product?id=12} and
+* {@code /product?id=97} share the template {@code host/product?id=#}. Word tokens are kept until a
+* node of the trie has more than {@code FANOUT} of them, at which point they are merged in a single
+* wildcard child "*", so {@code /tag/java/page/2} and {@code /tag/rust/page/7} end up in {@code host/tag/&#42;/page/#}.
+* <p>
+* Each template admits its first {@code budget} URLs, then only a fraction of the rest, spreading a
+* fixed page budget across distinct page types. Children are kept in small parallel arrays instead of maps,
+* since most nodes have one or two.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+class TemplateTrie{
+
+  static final int ADMIT = 0; // URL admitted.
+  static final int ADMIT_LAST = 1; // URL admitted, and its template's budget is now spent.
+  static final int SKIP = 2; // URL sampled out.
+  private static final int FANOUT = 32; // Distinct words under a node before they are merged in a wildcard.
+  private static final int MAX_NODES = 1000000; // New templates beyond this are admitted untracked.
+  private static final String WILDCARD = "*";
+
+  private int budget; // URLs admitted per template before sampling.
+  private double rate; // Fraction of URLs admitted once the budget is spent.
+  private Node root;
+  private int nodes;
+  private int templates;
+  private int skipped;
+
+  /**
+  * TemplateTrie's constructor.
+  * @param budget URLs admitted per template before sampling.
+  * @param rate Fraction of URLs admitted once a template's budget is spent, 0 to 1.
+  */
+  TemplateTrie(int budget, double rate){
+
+    this.budget = Math.max(1, budget);
+    this.rate = Math.max(0, Math.min(1, rate));
+    clear();
+  }
+
+  /**
+  * Remove all templates.
+  */
+  synchronized void clear(){
+
+    root = new Node();
+    nodes = 1;
+    templates = 0;
+    skipped = 0;
+  }
+
+  /**
+  * Split a URL in template tokens.
+  */
+  static ArrayList<String> tokensOf(URL urlObj){
+
+    ArrayList<String> tokens = new ArrayList<String>();
+    tokens.add(urlObj.getHost().toLowerCase() + ":" + urlObj.getPort());
+    for (String segment : urlObj.getPath().split("/")){
+      if (segment.length() > 0)
+        tokens.add(fold(segment));
+    }
+    if (urlObj.getPath().endsWith("/"))
+      tokens.add("/");
+    if (urlObj.getQuery() != null){
+      String[] params = urlObj.getQuery().split("&");
+      Arrays.sort(params);
+      for (String param : params){
+        int pos = param.indexOf('=');
+        tokens.add("?" + (pos == -1 ? param : param.substring(0, pos)));
+        tokens.add(pos == -1 ? "" : fold(param.substring(pos + 1)));
+      }
+    }
+    return tokens;
+  }
+
+  /**
+  * Fold the digit runs of a token.
+  */
+  private static String fold(String token){
+
+    for (int i = 0; i < token.length(); i++){
+      if (Character.isDigit(token.charAt(i)))
+        return token.replaceAll("[0-9]+", "#");
+    }
+    return token;
+  }
+
+  /**
+  * Decide whether a URL is crawled, learning its template.
+  * @param urlObj URL to admit.
+  * @return {@code ADMIT}, {@code ADMIT_LAST} or {@code SKIP}.
+  */
+  synchronized int admit(URL urlObj){
+
+    Node node = root;
+    for (String token : tokensOf(urlObj)){
+      node = node.child(token, this);
+      if (node == null)
+        return ADMIT; // Trie full.
+    }
+    if (node.offered++ == 0)
+      templates++;
+    if (node.offered <= budget)
+      return (node.offered == budget ? ADMIT_LAST : ADMIT);
+    long over = node.offered - budget;
+    if ((long)(over * rate) > (long)((over - 1) * rate))
+      return ADMIT;
+    skipped++;
+    return SKIP;
+  }
+
+  /**
+  * Describe the template a URL belongs to.
+  * @param urlObj URL to look up.
+  * @return The template, e.g. {@code host:-1/tag/&#42;/page/#}.
+  */
+  synchronized String templateOf(URL urlObj){
+
+    StringBuilder sb = new StringBuilder();
+    Node node = root;
+    boolean query = false; // Past the path.
+    boolean value = false; // Token is a query value.
+    for (String token : tokensOf(urlObj)){
+      Node next = node.find(token);
+      String key = token;
+      if (next == null && node.find(WILDCARD) != null){
+        next = node.find(WILDCARD);
+        key = WILDCARD;
+      }
+      if (value){
+        sb.append("=").append(key);
+        value = false;
+      }else if (key.startsWith("?")){
+        sb.append(query ? "&" : "?").append(key.substring(1));
+        query = value = true;
+      }else if (sb.length() == 0 || key.equals("/")){
+        sb.append(key);
+      }else{
+        sb.append("/").append(key);
+      }
+      if (next == null)
+        break;
+      node = next;
+    }
+    return sb.toString();
+  }
+
+  /**
+  * Obtain the number of templates learned.
+  */
+  synchronized int size(){
+    return templates;
+  }
+
+  /**
+  * Obtain the number of URLs sampled out.
+  */
+  synchronized int getSkipped(){
+    return skipped;
+  }
+
+  private static class Node{
+
+    private String[] keys = new String[0];
+    private Node[] kids = new Node[0];
+    private boolean collapsed; // Words go to the wildcard child.
+    private int offered; // URLs ending at this node.
+
+    Node find(String key){
+
+      for (int i = 0; i < keys.length; i++){
+        if (keys[i].equals(key))
+          return kids[i];
+      }
+      return null;
+    }
+
+    /**
+    * Find or add a child, merging word children in a wildcard past the fanout.
+    * @return The child, null if the trie is full.
+    */
+    Node child(String token, TemplateTrie trie){
+
+      boolean word = isWord(token);
+      Node kid = find((collapsed && word) ? WILDCARD : token);
+      if (kid != null)
+        return kid;
+      if (trie.nodes >= MAX_NODES)
+        return null;
+      if (collapsed && word)
+        token = WILDCARD;
+      kid = add(token, new Node());
+      trie.nodes++;
+      if (!(collapsed) && word && countWords() > FANOUT){
+        collapse(trie);
+        return find(WILDCARD);
+      }
+      return kid;
+    }
+
+    private Node add(String key, Node kid){
+
+      keys = Arrays.copyOf(keys, keys.length + 1);
+      kids = Arrays.copyOf(kids, kids.length + 1);
+      keys[keys.length - 1] = key;
+      kids[kids.length - 1] = kid;
+      return kid;
+    }
+
+    private int countWords(){
+
+      int count = 0;
+      for (String key : keys){
+        if (isWord(key))
+          count++;
+      }
+      return count;
+    }
+
+    /**
+    * Merge the word children in one wildcard child.
+    */
+    private void collapse(TemplateTrie trie){
+
+      collapsed = true;
+      Node wildcard = new Node();
+      trie.nodes++;
+      ArrayList<String> keptKeys = new ArrayList<String>();
+      ArrayList<Node> keptKids = new ArrayList<Node>();
+      for (int i = 0; i < keys.length; i++){
+        if (isWord(keys[i])){
+          wildcard.merge(kids[i], trie);
+        }else{
+          keptKeys.add(keys[i]);
+          keptKids.add(kids[i]);
+        }
+      }
+      keys = keptKeys.toArray(new String[0]);
+      kids = keptKids.toArray(new Node[0]);
+      add(WILDCARD, wildcard);
+    }
+
+    /**
+    * Add the counts and children of another node to this one.
+    */
+    private void merge(Node other, TemplateTrie trie){
+
+      if (offered > 0 && other.offered > 0)
+        trie.templates--;
+      offered += other.offered;
+      trie.nodes--; // The other node is dropped.
+      for (int i = 0; i < other.keys.length; i++){
+        String key = other.keys[i];
+        if (collapsed && isWord(key))
+          key = WILDCARD;
+        Node kid = find(key);
+        if (kid == null){
+          add(key, other.kids[i]);
+        }else{
+          kid.merge(other.kids[i], trie);
+        }
+      }
+      if (!(collapsed) && countWords() > FANOUT)
+        collapse(trie);
+    }
+
+    private static boolean isWord(String key){
+      return !(key.equals(WILDCARD) || key.equals("/") || key.startsWith("?") || key.indexOf('#') != -1 || key.contains(":"));
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.umarabdul.jspider;
+
+import java.util.*;
+
+
+/**
+* A list of URLs that holds only their IDs in a {@link UrlStore}, decoding them when read.
+* Used for JSpider's output queue and list of crawled URLs. All operations are thread-safe.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class UrlList extends AbstractList<String> implements RandomAccess{
+
+  private UrlStore store;
+  private int[] ids;
+  private int size;
+
+  /**
+  * UrlList's constructor.
+  * @param store Store to intern and decode the URLs with.
+  */
+  public UrlList(UrlStore store){
+
+    this.store = store;
+    ids = new int[256];
+    size = 0;
+  }
+
+  /**
+  * Append a URL by its ID.
+  * @param id ID of the URL in the backing store.
+  */
+  public synchronized void addId(int id){
+
+    if (size == ids.length)
+      ids = Arrays.copyOf(ids, size * 2);
+    ids[size++] = id;
+    modCount++;
+  }
+
+  /**
+  * Obtain the ID of the URL at an index.
+  * @param index Index of the URL.
+  * @return ID of the URL in the backing store.
+  */
+  public synchronized int getId(int index){
+
+    if (index < 0 || index >= size)
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    return ids[index];
+  }
+
+  @Override
+  public synchronized String get(int index){
+    return store.get(getId(index));
+  }
+
+  @Override
+  public synchronized int size(){
+    return size;
+  }
+
+  @Override
+  public synchronized void add(int index, String url){
+
+    if (index < 0 || index > size)
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    int id = store.intern(url);
+    if (size == ids.length)
+      ids = Arrays.copyOf(ids, size * 2);
+    System.arraycopy(ids, index, ids, index + 1, size - index);
+    ids[index] = id;
+    size++;
+    modCount++;
+  }
+
+  @Override
+  public synchronized String remove(int index){
+
+    String url = get(index);
+    System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+    size--;
+    modCount++;
+    return url;
+  }
+
+  @Override
+  public synchronized void clear(){
+    size = 0;
+    modCount++;
+  }
+}
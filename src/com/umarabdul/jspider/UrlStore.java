@@ -0,0 +1,284 @@
+package com.umarabdul.jspider;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+
+/**
+* A compact, append-only store of unique URLs.
+* Every URL is assigned a sequential integer ID and its bytes are front-coded against the previous
+* URL: each entry keeps only the length of the prefix it shares with its predecessor and the remaining
+* suffix. Entries are grouped into small blocks that start with a full URL, so decoding an ID walks at most
+* {@code BLOCK_SIZE} entries. Since URLs of a same-site crawl are mostly discovered next to URLs with the same
+* host and path, this cuts the per-URL footprint several-fold compared to {@code String} objects.
+* The arena pages can optionally be allocated off-heap.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class UrlStore{
+
+  public static final int BLOCK_SIZE = 16; // Max entries per front-coded block.
+  private static final int PAGE_SIZE = 1024 * 1024; // Size of an arena page.
+
+  private boolean offHeap; // Allocate arena pages with ByteBuffer.allocateDirect().
+  private ArrayList<ByteBuffer> pages; // Arena pages, only the last one is written to.
+  private long arenaBytes; // Bytes used in the arena.
+  private int[] blockFirstId; // ID of the first entry of each block.
+  private long[] blockPos; // Arena position of each block, as (page << 32 | offset).
+  private int blockCount; // Number of blocks.
+  private int blockFill; // Entries in the last block.
+  private int[] hashes; // Hash of each URL, indexed by ID.
+  private int[] table; // Open addressing hash table of (ID + 1), 0 for empty slots.
+  private int size; // Number of URLs stored.
+  private byte[] last; // Bytes of the last URL added, the base of the next entry.
+
+  /**
+  * Create an on-heap URL store.
+  */
+  public UrlStore(){
+    this(false);
+  }
+
+  /**
+  * UrlStore's constructor.
+  * @param offHeap Allocate the URL bytes outside the Java heap.
+  */
+  public UrlStore(boolean offHeap){
+
+    this.offHeap = offHeap;
+    clear();
+  }
+
+  /**
+  * Remove all URLs from the store. Previously assigned IDs become invalid.
+  */
+  public synchronized void clear(){
+
+    pages = new ArrayList<ByteBuffer>();
+    arenaBytes = 0;
+    blockFirstId = new int[64];
+    blockPos = new long[64];
+    blockCount = 0;
+    blockFill = 0;
+    hashes = new int[1024];
+    table = new int[2048];
+    size = 0;
+    last = new byte[0];
+  }
+
+  /**
+  * Choose where the arena pages are allocated. Only allowed while the store is empty.
+  * @param flag {@code true} to allocate pages off-heap.
+  */
+  public synchronized void setOffHeap(boolean flag){
+
+    if (size > 0)
+      throw new IllegalStateException("URL store is not empty");
+    offHeap = flag;
+  }
+
+  /**
+  * Check if the arena is allocated off-heap.
+  * @return {@code true/false}.
+  */
+  public boolean isOffHeap(){
+    return offHeap;
+  }
+
+  /**
+  * Obtain the number of URLs in the store.
+  * @return Number of URLs.
+  */
+  public synchronized int size(){
+    return size;
+  }
+
+  /**
+  * Obtain the number of arena bytes holding URL data.
+  * @return Arena size, in bytes.
+  */
+  public synchronized long getArenaBytes(){
+    return arenaBytes;
+  }
+
+  /**
+  * Obtain the ID of a URL, adding it to the store if not present.
+  * @param url URL to intern.
+  * @return ID of the URL.
+  */
+  public synchronized int intern(String url){
+
+    byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+    int hash = hash(bytes);
+    int slot = findSlot(bytes, hash);
+    if (table[slot] != 0)
+      return table[slot] - 1;
+    int id = append(bytes);
+    if (id == hashes.length)
+      hashes = Arrays.copyOf(hashes, hashes.length * 2);
+    hashes[id] = hash;
+    table[slot] = id + 1;
+    if ((size * 2) > table.length)
+      rehash();
+    return id;
+  }
+
+  /**
+  * Obtain the ID of a URL without adding it.
+  * @param url URL to look up.
+  * @return ID of the URL, -1 if not in the store.
+  */
+  public synchronized int find(String url){
+
+    byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+    int slot = findSlot(bytes, hash(bytes));
+    return table[slot] - 1;
+  }
+
+  /**
+  * Decode the URL of an ID.
+  * @param id ID of the URL.
+  * @return The URL.
+  */
+  public synchronized String get(int id){
+
+    if (id < 0 || id >= size)
+      throw new IndexOutOfBoundsException("Invalid URL ID: " + id);
+    return new String(decode(id), StandardCharsets.UTF_8);
+  }
+
+  /**
+  * Locate the table slot of a URL, or the empty slot it would occupy.
+  */
+  private int findSlot(byte[] bytes, int hash){
+
+    int mask = table.length - 1;
+    int slot = hash & mask;
+    while (table[slot] != 0){
+      int id = table[slot] - 1;
+      if (hashes[id] == hash && Arrays.equals(decode(id), bytes))
+        return slot;
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rehash(){
+
+    int[] grown = new int[table.length * 2];
+    int mask = grown.length - 1;
+    for (int id = 0; id < size; id++){
+      int slot = hashes[id] & mask;
+      while (grown[slot] != 0)
+        slot = (slot + 1) & mask;
+      grown[slot] = id + 1;
+    }
+    table = grown;
+  }
+
+  /**
+  * Front-code a URL into the arena and assign it the next ID.
+  */
+  private int append(byte[] bytes){
+
+    int shared = 0;
+    if (blockFill > 0 && blockFill < BLOCK_SIZE){
+      int limit = Math.min(last.length, bytes.length);
+      while (shared < limit && last[shared] == bytes[shared])
+        shared++;
+    }
+    int suffix = bytes.length - shared;
+    int need = 10 + suffix; // Two varints at most 5 bytes each.
+    ByteBuffer page = (pages.isEmpty() ? null : pages.get(pages.size() - 1));
+    if (page == null || page.remaining() < need){
+      // Entries never span pages, start a new block in a new page.
+      page = allocate(Math.max(PAGE_SIZE, need));
+      pages.add(page);
+      if (blockFill > 0){
+        blockFill = 0;
+        shared = 0;
+        suffix = bytes.length;
+      }
+    }
+    if (blockFill == 0 || blockFill == BLOCK_SIZE){
+      if (blockCount == blockFirstId.length){
+        blockFirstId = Arrays.copyOf(blockFirstId, blockCount * 2);
+        blockPos = Arrays.copyOf(blockPos, blockCount * 2);
+      }
+      blockFirstId[blockCount] = size;
+      blockPos[blockCount] = ((long)(pages.size() - 1) << 32) | page.position();
+      blockCount++;
+      blockFill = 0;
+    }
+    int start = page.position();
+    writeVarint(page, shared);
+    writeVarint(page, suffix);
+    page.put(bytes, shared, suffix);
+    arenaBytes += page.position() - start;
+    blockFill++;
+    last = bytes;
+    return size++;
+  }
+
+  private ByteBuffer allocate(int capacity){
+    return (offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity));
+  }
+
+  /**
+  * Rebuild the bytes of a URL by walking its block.
+  */
+  private byte[] decode(int id){
+
+    if (id == size - 1)
+      return last;
+    int block = Arrays.binarySearch(blockFirstId, 0, blockCount, id);
+    if (block < 0)
+      block = -block - 2;
+    ByteBuffer page = pages.get((int)(blockPos[block] >>> 32)).duplicate();
+    page.position((int)blockPos[block]);
+    byte[] current = new byte[0];
+    for (int i = blockFirstId[block]; i <= id; i++){
+      int shared = readVarint(page);
+      int suffix = readVarint(page);
+      byte[] next = new byte[shared + suffix];
+      System.arraycopy(current, 0, next, 0, shared);
+      page.get(next, shared, suffix);
+      current = next;
+    }
+    return current;
+  }
+
+  private static int hash(byte[] bytes){
+
+    int h = 0x811C9DC5;
+    for (byte b : bytes)
+      h = (h ^ (b & 0xFF)) * 0x01000193;
+    return h ^ (h >>> 16);
+  }
+
+  private static void writeVarint(ByteBuffer buf, int value){
+
+    while ((value & ~0x7F) != 0){
+      buf.put((byte)((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buf.put((byte)value);
+  }
+
+  private static int readVarint(ByteBuffer buf){
+
+    int value = 0;
+    int shift = 0;
+    while (true){
+      int b = buf.get();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+        return value;
+      shift += 7;
+    }
+  }
+}
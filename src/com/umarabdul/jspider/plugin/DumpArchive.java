@@ -0,0 +1,287 @@
+package com.umarabdul.jspider.plugin;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.zip.*;
+
+
+/**
+* Packs files downloaded by {@link MassDumper} into large rolling archives instead of one file per URL.
+* Supports WARC (one gzip member per record, as in ".warc.gz") and zip containers. Every stored URL is
+* listed in an index file with the archive, offset and length of its record, for random access.
+* Index lines are tab separated: {@code url, archive, offset, length, sha256}. Duplicate content is
+* not stored again, its index line points to the first copy. Writing to a directory that already has archives
+* continues their numbering and appends to their index, so earlier index lines stay valid.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class DumpArchive implements Closeable{
+
+  private String format; // "warc" or "zip".
+  private File dir; // Directory to write archives and index to.
+  private long rollSize; // Archive size that triggers a new archive.
+  private boolean dedup; // Store identical content once.
+  private int serial; // Number of the current archive.
+  private String name; // File name of the current archive.
+  private CountingStream out; // Byte counting stream of the current archive.
+  private ZipOutputStream zip; // Zip stream of the current archive, zip format only.
+  private BufferedWriter index;
+  private HashMap<String, String> stored; // Content hash to "archive\toffset\tlength" of its record.
+
+  /**
+  * DumpArchive's constructor.
+  * @param format Archive format, "warc" or "zip".
+  * @param dir Directory to write archives and index to.
+  * @param rollSize Size in bytes after which a new archive is started.
+  * @param dedup Store identical content only once.
+  * @throws IOException on error creating the index file.
+  */
+  public DumpArchive(String format, File dir, long rollSize, boolean dedup) throws IOException{
+
+    format = format.toLowerCase();
+    if (!(format.equals("warc") || format.equals("zip")))
+      throw new IllegalArgumentException("Unknown archive format: " + format);
+    this.format = format;
+    this.dir = dir;
+    this.rollSize = Math.max(1024 * 1024, rollSize);
+    this.dedup = dedup;
+    out = null;
+    zip = null;
+    dir.mkdirs();
+    serial = lastSerial(dir);
+    index = new BufferedWriter(new FileWriter(new File(dir, "archive.idx"), true));
+    stored = new HashMap<String, String>();
+  }
+
+  /**
+  * Find the number of the last archive in a directory, -1 if none.
+  */
+  private static int lastSerial(File dir){
+
+    int last = -1;
+    String[] names = dir.list();
+    for (String file : (names == null ? new String[0] : names)){
+      if (file.matches("dump-[0-9]{5,}\\.(warc\\.gz|zip)")){
+        try{
+          last = Math.max(last, Integer.parseInt(file.substring(5, file.indexOf('.'))));
+        }catch(NumberFormatException ignored){}
+      }
+    }
+    return last;
+  }
+
+  /**
+  * Append a downloaded file.
+  * @param url URL of the file.
+  * @param path Path of the file, used as the zip entry name.
+  * @param contentType Content type of the file, may be null.
+  * @param body Spooled body of the file.
+  * @param sha256 Hex SHA-256 of the body.
+  * @return {@code true} if the content was already stored and only indexed.
+  * @throws IOException on write error.
+  */
+  public synchronized boolean append(String url, String path, String contentType, Spool body, String sha256) throws IOException{
+
+    String location = (dedup ? stored.get(sha256) : null);
+    boolean duplicate = (location != null);
+    if (!(duplicate)){
+      if (out == null || out.count >= rollSize)
+        roll();
+      long offset = out.count;
+      if (format.equals("warc"))
+        writeWarcRecord("resource", url, contentType, body);
+      else
+        writeZipEntry(path, body);
+      location = String.format("%s\t%d\t%d", name, offset, out.count - offset);
+      if (dedup)
+        stored.put(sha256, location);
+    }
+    index.write(String.format("%s\t%s\t%s\n", url, location, sha256));
+    return duplicate;
+  }
+
+  /**
+  * Close the current archive and start the next one.
+  */
+  private void roll() throws IOException{
+
+    closeArchive();
+    index.flush(); // Index lines of the closed archive are complete.
+    serial++;
+    name = String.format("dump-%05d.%s", serial, (format.equals("warc") ? "warc.gz" : "zip"));
+    out = new CountingStream(new BufferedOutputStream(new FileOutputStream(new File(dir, name)), 256 * 1024));
+    if (format.equals("warc")){
+      byte[] info = "software: JSpider MassDumper\r\nformat: WARC File Format 1.0\r\n".getBytes("UTF-8");
+      writeWarcRecord("warcinfo", null, "application/warc-fields", new Spool(info));
+    }else{
+      zip = new ZipOutputStream(out);
+    }
+  }
+
+  /**
+  * Write a WARC record as its own gzip member.
+  */
+  private void writeWarcRecord(String type, String url, String contentType, Spool body) throws IOException{
+
+    StringBuilder header = new StringBuilder();
+    header.append("WARC/1.0\r\n");
+    header.append("WARC-Type: ").append(type).append("\r\n");
+    if (url != null)
+      header.append("WARC-Target-URI: ").append(url).append("\r\n");
+    header.append("WARC-Date: ").append(Instant.now().toString().replaceAll("\\.\\d+Z$", "Z")).append("\r\n");
+    header.append("WARC-Record-ID: <urn:uuid:").append(UUID.randomUUID()).append(">\r\n");
+    if (type.equals("warcinfo"))
+      header.append("WARC-Filename: ").append(name).append("\r\n");
+    header.append("Content-Type: ").append(contentType == null ? "application/octet-stream" : contentType).append("\r\n");
+    header.append("Content-Length: ").append(body.size()).append("\r\n\r\n");
+    GZIPOutputStream gz = new GZIPOutputStream(new FilterOutputStream(out){
+      @Override
+      public void close(){} // Keep the archive open after the member is finished.
+    }, 64 * 1024);
+    gz.write(header.toString().getBytes("UTF-8"));
+    body.copyTo(gz);
+    gz.write("\r\n\r\n".getBytes("UTF-8"));
+    gz.finish();
+  }
+
+  private void writeZipEntry(String path, Spool body) throws IOException{
+
+    zip.putNextEntry(new ZipEntry(path.startsWith("/") ? path.substring(1) : path));
+    body.copyTo(zip);
+    zip.closeEntry();
+    zip.flush();
+  }
+
+  private void closeArchive() throws IOException{
+
+    if (zip != null)
+      zip.close();
+    else if (out != null)
+      out.close();
+    zip = null;
+    out = null;
+  }
+
+  /**
+  * Close the current archive and the index.
+  * @throws IOException on write error.
+  */
+  @Override
+  public synchronized void close() throws IOException{
+
+    closeArchive();
+    index.close();
+  }
+
+  /**
+  * Output stream that counts the bytes written, used to track record offsets.
+  */
+  private static class CountingStream extends FilterOutputStream{
+
+    private long count = 0;
+
+    CountingStream(OutputStream out){
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException{
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException{
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+
+  /**
+  * Buffer for a downloaded body. Kept in memory up to a threshold, then moved to a temporary file,
+  * so workers can download in parallel while archive writes stay sequential.
+  */
+  public static class Spool implements Closeable{
+
+    private static final int MEMORY_LIMIT = 4 * 1024 * 1024;
+
+    private ByteArrayOutputStream mem;
+    private Path file;
+    private OutputStream fileOut;
+    private long size;
+
+    /**
+    * Create an empty spool.
+    */
+    public Spool(){
+      mem = new ByteArrayOutputStream();
+      size = 0;
+    }
+
+    Spool(byte[] data){
+      this();
+      mem.write(data, 0, data.length);
+      size = data.length;
+    }
+
+    /**
+    * Append bytes to the spool.
+    * @param b Source array.
+    * @param off Start offset.
+    * @param len Number of bytes.
+    * @throws IOException on temp file error.
+    */
+    public void write(byte[] b, int off, int len) throws IOException{
+
+      if (fileOut == null && mem.size() + len > MEMORY_LIMIT){
+        file = Files.createTempFile("jspider-spool", ".tmp");
+        fileOut = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+        mem.writeTo(fileOut);
+        mem = null;
+      }
+      if (fileOut != null)
+        fileOut.write(b, off, len);
+      else
+        mem.write(b, off, len);
+      size += len;
+    }
+
+    /**
+    * Obtain the number of bytes spooled.
+    * @return Size in bytes.
+    */
+    public long size(){
+      return size;
+    }
+
+    void copyTo(OutputStream target) throws IOException{
+
+      if (fileOut == null){
+        mem.writeTo(target);
+        return;
+      }
+      fileOut.flush();
+      Files.copy(file, target);
+    }
+
+    /**
+    * Release the spool, deleting its temp file if any.
+    */
+    @Override
+    public void close(){
+
+      if (fileOut != null){
+        try{
+          fileOut.close();
+          Files.deleteIfExists(file);
+        }catch(IOException ignored){}
+      }
+      mem = null;
+    }
+  }
+}
@@ -2,30 +2,44 @@ package com.umarabdul.jspider.plugin;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.net.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import org.jsoup.nodes.Element;
 import com.umarabdul.jspider.*;
-import com.umarabdul.jbrowser.*;
 
 
 /**
 * A JSpider plugin for locating web pages containing atleast one form.
+* Pages are analysed concurrently by the plugin's workers, and every distinct form is written to the output file as a
+* JSON Lines inventory entry: page, action, method, enctype, input names/types and hidden field values.
+* Forms that appear on many pages (search boxes, login widgets...) are recognised by a structural hash
+* of their action, method and inputs, and written only once.
 *
 * @author Umar Abdul
-* @version 1.0
+* @version 1.1
 * Date: 01/Oct/2020
 */
 
 public class FormFinder extends Plugin{
 
   private BufferedWriter writer = null;
+  private String method = null; // Submission method of forms to look for.
+  private ArrayList<String> exts = null;
+  private PageFetcher fetcher = null;
+  private Set<String> seen = ConcurrentHashMap.newKeySet(); // Structural hashes of forms already reported.
+  private AtomicInteger pages = new AtomicInteger(0); // Pages with a target form.
 
   public FormFinder(JSpider spider){
-  
+
     super(spider);
     setPluginName("FormFinder"); // Define the plugin name to be used in console outputs.
+    // Max number of pages to analyse at a time.
+    setDefaultWorkers(getOption("threads") == null ? 5 : Integer.valueOf(getOption("threads")));
   }
-  
+
   /**
   * Return a string array containing the names of options required by this plugin.
   * @return Array of option names.
@@ -38,99 +52,193 @@ public class FormFinder extends Plugin{
   }
 
   /**
-  * Called in a background thread to start the plugin.
+  * Validate the options and open the output file, if any.
+  * @return {@code false} on error.
   */
   @Override
-  public void run(){
+  public boolean setup(){
 
-    String url = null;
-    ArrayList<String> exts = getSpider().getExts();
-    String method = getOption("method"); // Submission method of forms to look for.
+    exts = getSpider().getExts();
+    fetcher = getSpider().getFetcher();
+    method = getOption("method");
     if (method != null){
       method = method.toLowerCase();
       if (!(method.equals("post") || method.equals("get"))){
         printError("Unknown target method: " +method);
-        return;
+        return false;
       }
     }
-    String outfile = getOption("outfile"); // File to log URLs to.
+    String outfile = getOption("outfile"); // File to write the form inventory to.
     if (outfile != null){
       try{
         writer = new BufferedWriter(new FileWriter(outfile));
       }catch(IOException e){
         printError("Error opening output file: " +outfile);
-        return;
+        return false;
       }
     }
-    URL urlObj = null;
-    String path = null;
-    JBrowser jb = getBrowser();
-    ArrayList<Element> forms = null;
-    int count = 0;
-    while (true){
-      url = getURL();
-      if (url == null){ // Shutdown the plugin.
-        if (count > 1)
-          printSuccess(String.valueOf(count) + " URLs with forms located!");
-        if (writer != null){
-          try{
-            writer.close();
-          }catch(IOException e){}
-        }
-        return;
-      }
-      try{
-        urlObj = new URL(url);
-      }catch(MalformedURLException e){
-        continue;
-      }
-      path = urlObj.getPath();
-      if (path.length() == 0)
-        path += "/index.html";
-      boolean valid = false;
-      for (String ext : exts){
-        if (path.endsWith(ext)){
-          valid = true;
-          break;
-        }
-      }
-      if (!(valid))
-        continue;
+    return true;
+  }
+
+  /**
+  * Called from the plugin's workers for every URL, analyses the forms of web pages.
+  * @param url URL yielded by JSpider.
+  */
+  @Override
+  public void process(String url){
+
+    if (isPage(url))
+      analyse(url);
+  }
+
+  /**
+  * Print a summary and close the output file.
+  */
+  @Override
+  public void shutdown(){
+
+    if (pages.get() > 0)
+      printSuccess(String.format("%d distinct forms located in %d pages!", seen.size(), pages.get()));
+    if (writer != null){
       try{
-        jb.open(url);
-      }catch(JBrowserException e){
-        continue;
-      }
-      forms = jb.getForms();
-      if (forms.size() == 0)
-        continue;
-      if (method == null){
-        count++;
-        yieldURL(url);
+        writer.close();
+      }catch(IOException e){}
+    }
+  }
+
+  /**
+  * Check if a URL has one of JSpider's web page extensions.
+  */
+  private boolean isPage(String url){
+
+    String path = null;
+    try{
+      path = new URL(url).getPath();
+    }catch(MalformedURLException e){
+      return false;
+    }
+    if (path.length() == 0)
+      path += "/index.html";
+    for (String ext : exts){
+      if (path.endsWith(ext))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+  * Fetch a page and report its target forms.
+  */
+  private void analyse(String url){
+
+    Page page = null;
+    try{
+      page = fetcher.fetch(url);
+    }catch(FetchException e){
+      return;
+    }
+    boolean found = false;
+    for (Element form : page.getDocument().select("form")){
+      String formMethod = form.attr("method").toLowerCase();
+      if (formMethod.length() == 0)
+        formMethod = "get";
+      if (method != null && !(formMethod.equals(method)))
         continue;
-      }
-      for (Element form : forms){
-        if (form.attr("method").toLowerCase().equals(method)){
-          count++;
-          yieldURL(url);
-          break;
-        }
-      }
+      found = true;
+      yieldForm(url, form, formMethod);
     }
+    if (found)
+      pages.incrementAndGet();
   }
 
   /**
-  * Called when a target form is found in a URL.
+  * Called when a target form is found in a URL. Writes the form to the inventory if it wasn't seen before.
   * @param url URL containing the form.
+  * @param form The form element.
+  * @param formMethod Submission method of the form, in lowercase.
   */
-  private void yieldURL(String url){
+  private void yieldForm(String url, Element form, String formMethod){
 
-    printSuccess("Form found: " + url);
-    if (writer != null){
+    String action = form.absUrl("action");
+    if (action.length() == 0)
+      action = url;
+    ArrayList<String[]> inputs = new ArrayList<String[]>(); // {name, type, value}
+    for (Element input : form.select("input, select, textarea, button")){
+      String type = (input.tagName().equals("input") ? input.attr("type").toLowerCase() : input.tagName());
+      if (type.length() == 0)
+        type = "text";
+      inputs.add(new String[]{input.attr("name"), type, input.attr("value")});
+    }
+    String hash = structuralHash(action, formMethod, inputs);
+    if (!(seen.add(hash)))
+      return;
+    printSuccess(String.format("Form found: %s (%s %s)", url, formMethod.toUpperCase(), action));
+    if (writer == null)
+      return;
+    StringBuilder json = new StringBuilder();
+    json.append("{\"hash\":").append(quote(hash));
+    json.append(",\"page\":").append(quote(url));
+    json.append(",\"action\":").append(quote(action));
+    json.append(",\"method\":").append(quote(formMethod));
+    json.append(",\"enctype\":").append(quote(form.hasAttr("enctype") ? form.attr("enctype") : "application/x-www-form-urlencoded"));
+    json.append(",\"inputs\":[");
+    StringBuilder hidden = new StringBuilder();
+    for (int i = 0; i < inputs.size(); i++){
+      String[] input = inputs.get(i);
+      json.append(i > 0 ? "," : "").append("{\"name\":").append(quote(input[0])).append(",\"type\":").append(quote(input[1])).append("}");
+      if (input[1].equals("hidden")) // Pairs, as names may repeat or be empty.
+        hidden.append(hidden.length() > 0 ? "," : "").append("{\"name\":").append(quote(input[0])).append(",\"value\":").append(quote(input[2])).append("}");
+    }
+    json.append("],\"hidden\":[").append(hidden).append("]}\n");
+    synchronized(this){
       try{
-        writer.write(url+"\n");
+        writer.write(json.toString());
         writer.flush();
       }catch(IOException e){}
-    } 
+    }
+  }
+
+  /**
+  * Hash the structure of a form: action (without query), method, and sorted input names and types.
+  */
+  private static String structuralHash(String action, String formMethod, ArrayList<String[]> inputs){
+
+    ArrayList<String> fields = new ArrayList<String>();
+    for (String[] input : inputs)
+      fields.add(input[0] + ":" + input[1]);
+    Collections.sort(fields);
+    String key = action.split("\\?")[0] + "\n" + formMethod + "\n" + String.join("\n", fields);
+    try{
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 8; i++)
+        sb.append(String.format("%02x", digest[i]));
+      return sb.toString();
+    }catch(NoSuchAlgorithmException | UnsupportedEncodingException e){
+      return key;
+    }
+  }
+
+  /**
+  * Quote a string as a JSON string literal.
+  */
+  private static String quote(String value){
+
+    StringBuilder sb = new StringBuilder("\"");
+    for (char c : value.toCharArray()){
+      switch (c){
+        case '"': sb.append("\\\""); break;
+        case '\\': sb.append("\\\\"); break;
+        case '\n': sb.append("\\n"); break;
+        case '\r': sb.append("\\r"); break;
+        case '\t': sb.append("\\t"); break;
+        default:
+          if (c < 0x20)
+            sb.append(String.format("\\u%04x", (int)c));
+          else
+            sb.append(c);
+      }
+    }
+    return sb.append("\"").toString();
   }
 }
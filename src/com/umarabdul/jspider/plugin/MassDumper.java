@@ -2,33 +2,56 @@ package com.umarabdul.jspider.plugin;
 
 import java.io.*;
 import java.util.*;
-import java.net.URL;
-import java.net.MalformedURLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import com.umarabdul.jspider.*;
-import com.umarabdul.jbrowser.*;
 
 
 /**
 * A JSpider plugin for mass download of specific files.
+* Files are downloaded by the plugin's workers and streamed to disk through NIO channels.
+* Interrupted downloads are kept as ".part" files and resumed with HTTP Range requests, and
+* files with identical content are hard linked to the first copy.
+* With the "archive" option set to "warc" or "zip", files are appended to large rolling
+* archives with an index instead (see {@link DumpArchive}).
 *
 * @author Umar Abdul
-* @version 1.0
+* @version 1.1
 * Date: 01/Oct/2020
 */
 
 public class MassDumper extends Plugin{
 
+  private static final String PART_SUFFIX = ".part";
+
   private String outdir = null;
   private String[] exts = null;
-  private int workers = 0;
-  private int downloaded = 0;
+  private int maxdl = 100; // Max number of files to download.
+  private boolean resume = true; // Resume partial downloads.
+  private boolean dedup = true; // Link files with identical content to the first copy.
+  private AtomicInteger reserved = new AtomicInteger(0); // Downloads queued or completed, used to enforce maxdl.
+  private AtomicInteger downloaded = new AtomicInteger(0);
+  private AtomicInteger duplicates = new AtomicInteger(0);
+  private AtomicInteger failed = new AtomicInteger(0);
+  private AtomicLong bytes = new AtomicLong(0);
+  private Set<String> queued = ConcurrentHashMap.newKeySet(); // Output paths already queued.
+  private ConcurrentHashMap<String, Path> hashes = new ConcurrentHashMap<String, Path>(); // Content hash to first file.
+  private DumpArchive archive = null; // Archive to pack files into, null to write one file per URL.
 
   public MassDumper(JSpider spider){
 
     super(spider);
     setPluginName("MassDumper"); // Define the plugin name to be used in console outputs.
+    // Max number of download threads to run at a time.
+    setDefaultWorkers(getOption("threads") == null ? 5 : Integer.valueOf(getOption("threads")));
   }
-  
+
   /**
   * Return a string array containing the names of options required by this plugin.
   * @return Array of option names.
@@ -41,102 +64,301 @@ public class MassDumper extends Plugin{
   }
 
   /**
-  * Called in a background thread to start the plugin.
+  * Read the options and open the archive, if any.
+  * @return {@code false} on error.
   */
   @Override
-  public void run(){
+  public boolean setup(){
 
-    String url = null;
     exts = getOption("exts").split(";"); // Target file extensions.
     outdir = getOption("outdir"); // Directory to write files to.
-    int threads = 5; // Max number of download threads to run at a time.
-    if (getOption("threads") != null)
-      threads = Integer.valueOf(getOption("threads"));
-    int maxdl = 100; // Max number of files to download.
     if (getOption("max") != null)
       maxdl = Integer.valueOf(getOption("max"));
-    String path = "";
-    File file = null;
-    Thread t = null;
-    URL urlObj = null;
-    while (true){
-      if (downloaded >= maxdl){
-        printSuccess(String.format("%d files downloaded successfully!", downloaded));
-        return;
-      }
-      url = getURL();
-      if (url == null){ // shutdown the plugin.
-        return;
+    if (getOption("resume") != null)
+      resume = Boolean.valueOf(getOption("resume"));
+    if (getOption("dedup") != null)
+      dedup = Boolean.valueOf(getOption("dedup"));
+    if (getOption("archive") != null){
+      long rollSize = 1024; // Archive size in MB.
+      if (getOption("archive-size") != null)
+        rollSize = Long.valueOf(getOption("archive-size"));
+      try{
+        archive = new DumpArchive(getOption("archive"), new File(outdir), rollSize * 1024 * 1024, dedup);
+      }catch(IOException | IllegalArgumentException e){
+        printError("Error creating archive: " + e.getMessage());
+        return false;
       }
+    }
+    return true;
+  }
+
+  /**
+  * Called from the plugin's workers for every URL, downloads target files until the max is reached.
+  * @param url URL yielded by JSpider.
+  */
+  @Override
+  public void process(String url){
+
+    String path = null;
+    try{
+      path = mapPath(new URL(url));
+    }catch(MalformedURLException e){
+      return;
+    }
+    if (path == null || !(queued.add(path)))
+      return;
+    if (reserved.incrementAndGet() > maxdl){
+      // Max reached, the path may still be downloaded if a download fails and gives its reservation back.
+      reserved.decrementAndGet();
+      queued.remove(path);
+      return;
+    }
+    download(url, Paths.get(outdir + path));
+  }
+
+  /**
+  * Close the archive, if any, and print a summary.
+  */
+  @Override
+  public void shutdown(){
+
+    if (archive != null){
       try{
-        urlObj = new URL(url);
-      }catch(MalformedURLException e){
+        archive.close();
+      }catch(IOException e){
+        printError("Error closing archive: " + e.getMessage());
+      }
+    }
+    printSuccess(String.format("%d files downloaded successfully! (%d duplicates, %d failed, %.2f MB)", downloaded.get(), duplicates.get(), failed.get(), bytes.get() / (1024.0 * 1024.0)));
+  }
+
+  /**
+  * Map a URL to a file path relative to the output directory, without touching the filesystem.
+  * @param urlObj URL of the file.
+  * @return Path starting with "/", {@code null} if the file is not a target.
+  */
+  private String mapPath(URL urlObj){
+
+    // Resolve "." and ".." segments so paths can't escape outdir.
+    ArrayDeque<String> segments = new ArrayDeque<String>();
+    for (String seg : urlObj.getPath().split("/")){
+      if (seg.length() == 0 || seg.equals("."))
+        continue;
+      if (seg.equals("..")){
+        segments.pollLast();
         continue;
       }
-      try{
-        path = new File(urlObj.getPath()).getCanonicalPath();
-        if (path.length() == 0 || path.endsWith("/"))
-          path += "index.html";
-        if (!(path.split("/")[path.split("/").length - 1].contains(".")))
-          path += "/index.html";
-        if (!(path.startsWith("/")))
-          path = "/" + path;
-        path = new File(outdir + path).getCanonicalPath();
-        boolean valid = false;
-        for (String e : exts){
-          if (path.endsWith(e) || e.equals("*")){
-            valid = true;
-            break;
+      segments.addLast(seg);
+    }
+    String path = "/" + String.join("/", segments);
+    if (path.endsWith("/"))
+      path += "index.html";
+    else if (!(segments.isEmpty() || segments.peekLast().contains(".")))
+      path += "/index.html";
+    for (String e : exts){
+      if (path.endsWith(e) || e.equals("*"))
+        return path;
+    }
+    return null;
+  }
+
+  /**
+  * Download a file, resuming its partial copy if any.
+  * @param url URL of the file.
+  * @param file Output file.
+  */
+  private void download(String url, Path file){
+
+    if (archive != null){
+      archiveDownload(url, file.toString().substring(outdir.length()));
+      return;
+    }
+    Path part = Paths.get(file.toString() + PART_SUFFIX);
+    try{
+      if (Files.exists(file)){
+        reserved.decrementAndGet(); // Mirrored by an earlier run.
+        return;
+      }
+      Files.createDirectories(file.getParent());
+      printStatus(String.format("Downloading %s...", url));
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      long offset = (resume && Files.exists(part) ? Files.size(part) : 0);
+      HttpURLConnection conn = openConnection(url, offset);
+      int status = conn.getResponseCode();
+      if (offset > 0 && !(continuesPart(conn, status, offset))){ // The file changed, or the range was ignored.
+        conn.disconnect();
+        offset = 0;
+        conn = openConnection(url, 0);
+        status = conn.getResponseCode();
+      }
+      if (status == 416 && offset > 0){ // Partial copy is already complete.
+        conn.disconnect();
+        hashFile(part, digest);
+      }else if (status >= 400){
+        conn.disconnect();
+        throw new IOException(String.format("HTTP %d", status));
+      }else{
+        boolean append = (status == 206 && offset > 0);
+        if (append)
+          hashFile(part, digest);
+        else
+          offset = 0;
+        try (ReadableByteChannel in = Channels.newChannel(conn.getInputStream());
+             FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE, (append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING))){
+          ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+          while (in.read(buf) != -1){
+            buf.flip();
+            digest.update(buf.duplicate());
+            while (buf.hasRemaining())
+              bytes.addAndGet(out.write(buf));
+            buf.clear();
           }
         }
-        if (!(valid))
-          continue;
-        file = new File(path);
-        if (file.exists())
-          continue;
-        synchronized(this){
-          file.getParentFile().mkdirs();
-        }
-        while (workers >= threads){ // wait.
-          try{
-            Thread.sleep(50);
-          }catch(InterruptedException e){}
-        }
-        t = new Thread(new Downloader(url, file.getPath()));
-        t.start();
-        workers++;
-      }catch(Exception e){
-        printError(e.getMessage());
       }
+      Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+      if (dedup && linkDuplicate(file, toHex(digest.digest()))){
+        duplicates.incrementAndGet();
+        printSuccess(String.format("%s downloaded! (duplicate)", url));
+      }else{
+        printSuccess(String.format("%s downloaded!", url));
+      }
+      downloaded.incrementAndGet();
+    }catch(IOException | NoSuchAlgorithmException e){
+      reserved.decrementAndGet();
+      failed.incrementAndGet();
+      printError(String.format("%s: %s", url, e.getMessage()));
     }
   }
 
   /**
-  * This inner class handles the actual file download.
+  * Check a response to a ranged request against the partial copy it resumes. A 206 must start where the copy
+  * ends, and a 416 must report a total length equal to the copy's size. Other responses don't use the copy.
+  * @param conn Connection of the response.
+  * @param status Status code of the response.
+  * @param offset Size of the partial copy.
+  * @return {@code false} if the partial copy must be downloaded again.
   */
-  private class Downloader implements Runnable{
+  private boolean continuesPart(HttpURLConnection conn, int status, long offset){
 
-    private String url;
-    private String path;
+    if (status != 206 && status != 416)
+      return true;
+    String range = conn.getHeaderField("Content-Range"); // "bytes <start>-<end>/<total>" or "bytes */<total>".
+    if (range == null || !(range.trim().startsWith("bytes ")))
+      return false;
+    range = range.trim().substring(6).trim();
+    try{
+      if (status == 206)
+        return (range.indexOf('-') > 0 && Long.parseLong(range.substring(0, range.indexOf('-')).trim()) == offset);
+      return (range.indexOf('/') >= 0 && Long.parseLong(range.substring(range.indexOf('/') + 1).trim()) == offset);
+    }catch(NumberFormatException e){
+      return false;
+    }
+  }
 
-    public Downloader(String url, String path){
-      this.url = url;
-      this.path = path;
+  /**
+  * Download a file into the archive. The body is spooled first so downloads run in parallel
+  * while archive writes stay sequential.
+  * @param url URL of the file.
+  * @param path Path of the file relative to the output directory.
+  */
+  private void archiveDownload(String url, String path){
+
+    try (DumpArchive.Spool body = new DumpArchive.Spool()){
+      printStatus(String.format("Downloading %s...", url));
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      HttpURLConnection conn = openConnection(url, 0);
+      int status = conn.getResponseCode();
+      if (status >= 400){
+        conn.disconnect();
+        throw new IOException(String.format("HTTP %d", status));
+      }
+      try (InputStream in = conn.getInputStream()){
+        byte[] buf = new byte[64 * 1024];
+        int len;
+        while ((len = in.read(buf)) != -1){
+          digest.update(buf, 0, len);
+          body.write(buf, 0, len);
+          bytes.addAndGet(len);
+        }
+      }
+      if (archive.append(url, path, conn.getContentType(), body, toHex(digest.digest()))){
+        duplicates.incrementAndGet();
+        printSuccess(String.format("%s archived! (duplicate)", url));
+      }else{
+        printSuccess(String.format("%s archived!", url));
+      }
+      downloaded.incrementAndGet();
+    }catch(IOException | NoSuchAlgorithmException e){
+      reserved.decrementAndGet();
+      failed.incrementAndGet();
+      printError(String.format("%s: %s", url, e.getMessage()));
     }
+  }
 
-    @Override
-    public void run(){
-      
-      try{
-        JBrowser jb = getBrowser();
-        printStatus(String.format("Downloading %s...", url));
-        jb.download(url, null, path);
-        downloaded++;
-        printSuccess(String.format("%s downloaded!", url));
-      }catch(JBrowserException e){
-        printError(e.getMessage());
+  /**
+  * Open a connection to a URL using JSpider's proxy, headers, cookies and timeout.
+  * @param url Target URL.
+  * @param offset Byte offset to resume from, 0 for the whole file.
+  */
+  private HttpURLConnection openConnection(String url, long offset) throws IOException{
+
+    JSpider spider = getSpider();
+    HttpURLConnection conn = (HttpURLConnection)(new URL(url).openConnection(spider.getProxy()));
+    conn.setConnectTimeout(spider.getTimeout());
+    conn.setReadTimeout(spider.getTimeout());
+    for (Map.Entry<String, String> header : spider.getHeaders().entrySet())
+      conn.setRequestProperty(header.getKey(), header.getValue());
+    HashMap<String, String> cookies = spider.getCookies();
+    if (cookies.size() > 0){
+      StringBuilder sb = new StringBuilder();
+      for (Map.Entry<String, String> cookie : cookies.entrySet())
+        sb.append(sb.length() > 0 ? "; " : "").append(cookie.getKey()).append("=").append(cookie.getValue());
+      conn.setRequestProperty("Cookie", sb.toString());
+    }
+    if (offset > 0)
+      conn.setRequestProperty("Range", "bytes=" + offset + "-");
+    return conn;
+  }
+
+  /**
+  * Feed the content of a file to a digest.
+  */
+  private void hashFile(Path file, MessageDigest digest) throws IOException{
+
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)){
+      ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+      while (in.read(buf) != -1){
+        buf.flip();
+        digest.update(buf);
+        buf.clear();
       }
-      workers--;
     }
   }
+
+  /**
+  * Replace a file with a hard link to an earlier file with the same content.
+  * @param file Downloaded file.
+  * @param hash Hex SHA-256 of the file's content.
+  * @return {@code true} if the file is a duplicate.
+  */
+  private boolean linkDuplicate(Path file, String hash){
+
+    Path first = hashes.putIfAbsent(hash, file);
+    if (first == null)
+      return false;
+    try{
+      Path tmp = Paths.get(file.toString() + PART_SUFFIX);
+      Files.createLink(tmp, first);
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }catch(IOException | UnsupportedOperationException e){} // Keep the copy if links aren't supported.
+    return true;
+  }
+
+  private static String toHex(byte[] data){
+
+    StringBuilder sb = new StringBuilder();
+    for (byte b : data)
+      sb.append(String.format("%02x", b));
+    return sb.toString();
+  }
 }
@@ -7,7 +7,10 @@ import com.umarabdul.jbrowser.*;
 
 /**
 * This is an abtract class designed for JSpider's plugins.
-* All plugins must inherit this class and overide the getRequiredOptions() and run() methods.
+* All plugins must inherit this class and overide the getRequiredOptions() method, and either run() or process().
+* Plugins overriding run() consume URLs with getURL() in a single thread. Plugins overriding process() are
+* handed one URL per call from a pool of getWorkers() threads, with setup() and shutdown() called around them.
+* Each plugin is fed through its own bounded queue, see {@link PluginRunner}.
 * JSpider allows the usage of multiple plugins at a time. However, all plugins share same options
 * data, which could cause problems when two or more active plugins have an option with the same name.
 *
@@ -20,9 +23,11 @@ public abstract class Plugin implements Runnable{
 
   private JSpider spider;
   private HashMap<String, String> options;
-  private ArrayList<String> outputQueue;
+  private List<String> outputQueue;
   private int fetchCount;
   private String pluginName;
+  private int defaultWorkers; // Workers to use when the "<name>.workers" option is not set.
+  private PluginRunner runner; // Runtime feeding the plugin, null if run outside JSpider's plugin runtime.
 
   /**
   * Plugin's standard constructor.
@@ -35,6 +40,8 @@ public abstract class Plugin implements Runnable{
     outputQueue = spider.getOutputQueue();
     fetchCount = 0;
     pluginName = "plugin";
+    defaultWorkers = 1;
+    runner = null;
   }
 
   /**
@@ -44,6 +51,88 @@ public abstract class Plugin implements Runnable{
   */
   public abstract String[] getRequiredOptions();
 
+  /**
+  * Called in a background thread to start the plugin. The default implementation
+  * hands every URL to {@code process()}.
+  */
+  @Override
+  public void run(){
+
+    String url = null;
+    while ((url = getURL()) != null){
+      try{
+        process(url);
+      }catch(Exception e){
+        printError(String.format("Error processing %s: %s", url, e));
+      }
+    }
+  }
+
+  /**
+  * Process a single URL. Called concurrently from the plugin's workers, so implementations must be thread safe.
+  * @param url URL yielded by JSpider.
+  * @throws Exception on error, which is counted and logged without stopping the plugin.
+  */
+  public void process(String url) throws Exception{}
+
+  /**
+  * Called once before the workers of a {@code process()} plugin are started.
+  * @return {@code false} to abort the plugin.
+  * @throws Exception on error, which aborts the plugin.
+  */
+  public boolean setup() throws Exception{
+    return true;
+  }
+
+  /**
+  * Called once after the last worker of a {@code process()} plugin exits.
+  * @throws Exception on error.
+  */
+  public void shutdown() throws Exception{}
+
+  /**
+  * Obtain the number of workers to run {@code process()} in. Uses the option "&lt;name&gt;.workers" if set.
+  * @return Number of workers.
+  */
+  public int getWorkers(){
+
+    String value = getOption(pluginName + ".workers");
+    return (value == null ? defaultWorkers : Integer.valueOf(value));
+  }
+
+  /**
+  * Set the number of workers to use when the "&lt;name&gt;.workers" option is not set.
+  * @param count Number of workers.
+  */
+  public final void setDefaultWorkers(int count){
+    defaultWorkers = count;
+  }
+
+  /**
+  * Check if the plugin implements {@code process()} instead of overriding {@code run()}.
+  * @return {@code true/false}.
+  */
+  public final boolean isConcurrent(){
+
+    try{
+      return (getClass().getMethod("run").getDeclaringClass() == Plugin.class);
+    }catch(NoSuchMethodException e){
+      return false;
+    }
+  }
+
+  final void setRunner(PluginRunner runner){
+    this.runner = runner;
+  }
+
+  /**
+  * Obtain the runtime feeding the plugin.
+  * @return Instance of PluginRunner, {@code null} if not started by JSpider.
+  */
+  public final PluginRunner getRunner(){
+    return runner;
+  }
+
   /**
   * Obtain the value of the given option name (case insensitive). Note: options are shared by all active plugins.
   * @param name Name of the target option.
@@ -54,13 +143,15 @@ public abstract class Plugin implements Runnable{
   }
 
   /**
-  * Obtain a URL from JSpider's output queue, without actually removing it.
-  * This function will block until a url is obtained or JSpider is no longer active,
+  * Obtain the next URL yielded by JSpider, from the plugin's input queue.
+  * This function will block until a url is obtained or JSpider is no longer active and the queue is drained,
   * in which case it will return null.
   * @return A URL, {@code null} on failure.
   */
   public final String getURL(){
 
+    if (runner != null)
+      return runner.take();
     while (true){
       if (fetchCount < outputQueue.size()){
         fetchCount++;
@@ -90,6 +181,14 @@ public abstract class Plugin implements Runnable{
     return spider;
   }
 
+  /**
+  * Obtain the name of the plugin used in console outputs.
+  * @return Name of plugin.
+  */
+  public final String getPluginName(){
+    return pluginName;
+  }
+
   /**
   * Set the name of the plugin to use in console outputs.
   * @param name Name of plugin.
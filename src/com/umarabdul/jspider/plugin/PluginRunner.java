@@ -0,0 +1,339 @@
+package com.umarabdul.jspider.plugin;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import com.umarabdul.jspider.*;
+
+
+/**
+* Runtime of a single plugin. A dispatcher thread copies URLs from JSpider's output queue into a bounded
+* input queue, and the plugin consumes them from a pool of worker threads. Plugins overriding
+* {@link Plugin#process(String)} get {@link Plugin#getWorkers()} workers, each calling process() per URL
+* with exceptions isolated to that URL. Plugins overriding {@link Plugin#run()} run in a single worker,
+* and {@link Plugin#getURL()} reads from the input queue. All threads are daemons.
+* <p>
+* When the input queue is full, the backpressure policy decides what happens:
+* <ul>
+* <li>{@code block} - the dispatcher waits. The plugin sees every URL, possibly long after the crawl.</li>
+* <li>{@code drop} - new URLs are dropped until there is room.</li>
+* <li>{@code sample} - once the queue is half full, only one in every N URLs is admitted.</li>
+* </ul>
+* Workers, queue size, policy and sample rate are read from the plugin options
+* {@code <plugin>.workers}, {@code <plugin>.queue}, {@code <plugin>.policy} and {@code <plugin>.sample}.
+*
+* @author Umar Abdul
+* @version 1.0
+* Date: 19/Oct/2026
+*/
+
+public class PluginRunner{
+
+  public static final String BLOCK = "block";
+  public static final String DROP = "drop";
+  public static final String SAMPLE = "sample";
+  private static final int MAX_LOGGED_ERRORS = 10; // Errors printed in full before only counting them.
+
+  private Plugin plugin;
+  private JSpider spider;
+  private int workers; // Number of worker threads.
+  private int capacity; // Size of the input queue.
+  private String policy; // Backpressure policy.
+  private int sampleRate; // Admit one in every sampleRate URLs under the sample policy.
+  private ArrayBlockingQueue<String> queue; // Input queue of the plugin.
+  private volatile boolean dispatched; // Set when the dispatcher has handed over its last URL.
+  private volatile boolean closed; // Set when all workers have exited.
+  private ArrayList<Thread> threads;
+  private AtomicInteger running; // Workers still running.
+  private CountDownLatch done; // Counted down by each worker on exit, after the last one shuts the plugin down.
+  private AtomicLong offered = new AtomicLong(0); // URLs received from JSpider.
+  private AtomicLong dropped = new AtomicLong(0); // URLs dropped or not sampled.
+  private AtomicLong processed = new AtomicLong(0); // URLs handed to the plugin.
+  private AtomicLong errors = new AtomicLong(0); // Exceptions thrown by the plugin.
+  private AtomicInteger peakDepth = new AtomicInteger(0); // Max observed queue depth.
+  private long startTime;
+  private volatile long endTime;
+
+  /**
+  * PluginRunner's constructor.
+  * @param plugin Plugin to run.
+  * @param spider Instance of JSpider feeding the plugin.
+  */
+  public PluginRunner(Plugin plugin, JSpider spider){
+
+    this.plugin = plugin;
+    this.spider = spider;
+    String prefix = plugin.getPluginName().toLowerCase() + ".";
+    workers = (plugin.isConcurrent() ? Math.max(1, plugin.getWorkers()) : 1);
+    capacity = Math.max(1, intOption(prefix + "queue", 1024));
+    sampleRate = Math.max(1, intOption(prefix + "sample", 10));
+    policy = plugin.getOption(prefix + "policy");
+    policy = (policy == null ? BLOCK : policy.toLowerCase());
+    if (!(policy.equals(BLOCK) || policy.equals(DROP) || policy.equals(SAMPLE)))
+      throw new IllegalArgumentException("Unknown backpressure policy: " + policy);
+    queue = new ArrayBlockingQueue<String>(capacity);
+    threads = new ArrayList<Thread>();
+    plugin.setRunner(this);
+  }
+
+  private int intOption(String name, int defaultValue){
+
+    String value = plugin.getOption(name);
+    return (value == null ? defaultValue : Integer.valueOf(value));
+  }
+
+  /**
+  * Set up the plugin, then start the dispatcher and worker threads.
+  * @return {@code false} if the plugin failed to set up.
+  */
+  public boolean start(){
+
+    startTime = System.currentTimeMillis();
+    dispatched = false;
+    closed = false;
+    running = new AtomicInteger(workers);
+    done = new CountDownLatch(workers);
+    if (plugin.isConcurrent()){
+      try{
+        if (!(plugin.setup()))
+          return false;
+      }catch(Exception e){
+        plugin.printError("Plugin setup failed: " + e);
+        return false;
+      }
+    }
+    Thread dispatcher = new Thread(this::dispatch, "JSpider-" + plugin.getPluginName() + "-dispatcher");
+    dispatcher.setDaemon(true);
+    threads.add(dispatcher);
+    for (int i = 0; i < workers; i++){
+      Thread t = new Thread(this::work, String.format("JSpider-%s-%d", plugin.getPluginName(), i));
+      t.setDaemon(true);
+      threads.add(t);
+    }
+    for (Thread t : threads)
+      t.start();
+    return true;
+  }
+
+  /**
+  * Copy URLs from JSpider's output queue to the input queue, applying the backpressure policy.
+  */
+  private void dispatch(){
+
+    List<String> outputQueue = spider.getOutputQueue();
+    CompletableFuture<JSpider> completion = spider.getCompletion();
+    int cursor = 0;
+    long sampled = 0;
+    boolean finished = false;
+    try{
+      while (!(closed)){
+        if (cursor >= outputQueue.size()){
+          if (finished)
+            break;
+          // Draining stops new targets, but in-flight fetches keep yielding URLs until the workers exit.
+          // Once they have, one more pass picks up whatever they yielded last.
+          finished = completion.isDone();
+          if (!(finished))
+            Thread.sleep(50);
+          continue;
+        }
+        String url = outputQueue.get(cursor++);
+        offered.incrementAndGet();
+        boolean admitted = true;
+        if (policy.equals(BLOCK)){
+          while (!(queue.offer(url, 50, TimeUnit.MILLISECONDS) || closed));
+          admitted = !(closed);
+        }else if (policy.equals(SAMPLE) && queue.size() >= capacity / 2 && (sampled++ % sampleRate) != 0){
+          admitted = false;
+        }else{
+          admitted = queue.offer(url);
+        }
+        if (!(admitted))
+          dropped.incrementAndGet();
+        peakDepth.accumulateAndGet(queue.size(), Math::max);
+      }
+    }catch(InterruptedException e){
+    }finally{
+      dispatched = true;
+    }
+  }
+
+  /**
+  * Worker loop. Runs the plugin's run() once, or calls process() for every URL.
+  */
+  private void work(){
+
+    try{
+      if (!(plugin.isConcurrent())){
+        try{
+          plugin.run();
+        }catch(Exception e){
+          errors.incrementAndGet();
+          plugin.printError("Plugin crashed: " + e);
+        }
+        return;
+      }
+      String url = null;
+      while ((url = take()) != null){
+        try{
+          plugin.process(url);
+        }catch(Exception e){
+          if (errors.incrementAndGet() <= MAX_LOGGED_ERRORS)
+            plugin.printError(String.format("Error processing %s: %s", url, e));
+        }
+      }
+    }finally{
+      if (running.decrementAndGet() == 0){
+        if (plugin.isConcurrent()){
+          try{
+            plugin.shutdown();
+          }catch(Exception e){
+            plugin.printError("Plugin shutdown failed: " + e);
+          }
+        }
+        closed = true;
+        queue.clear(); // Nobody is left to read them.
+        endTime = System.currentTimeMillis();
+      }
+      done.countDown();
+    }
+  }
+
+  /**
+  * Obtain the next URL from the input queue, blocking until one is available.
+  * @return A URL, {@code null} once the crawl is over and the queue is drained.
+  */
+  String take(){
+
+    try{
+      while (true){
+        String url = queue.poll(50, TimeUnit.MILLISECONDS);
+        if (url != null){
+          processed.incrementAndGet();
+          return url;
+        }
+        if (dispatched && queue.isEmpty())
+          return null;
+      }
+    }catch(InterruptedException e){
+      return null;
+    }
+  }
+
+  /**
+  * Wait for the plugin to consume its queue and finish.
+  * @param timeout Max time to wait in milliseconds, 0 to wait forever.
+  * @return {@code true} if the plugin finished.
+  */
+  public boolean await(long timeout){
+
+    try{
+      if (timeout <= 0){
+        done.await();
+        return true;
+      }
+      return done.await(timeout, TimeUnit.MILLISECONDS);
+    }catch(InterruptedException e){
+      return false;
+    }
+  }
+
+  /**
+  * Check if the plugin has finished.
+  * @return {@code true/false}.
+  */
+  public boolean isDone(){
+    return (done != null && done.getCount() == 0);
+  }
+
+  /**
+  * Obtain the plugin run by this runner.
+  * @return The plugin.
+  */
+  public Plugin getPlugin(){
+    return plugin;
+  }
+
+  /**
+  * Obtain the number of worker threads.
+  * @return Number of workers.
+  */
+  public int getWorkers(){
+    return workers;
+  }
+
+  /**
+  * Obtain the backpressure policy.
+  * @return One of {@code block}, {@code drop} or {@code sample}.
+  */
+  public String getPolicy(){
+    return policy;
+  }
+
+  /**
+  * Obtain the number of URLs waiting in the input queue.
+  * @return Queue depth.
+  */
+  public int getQueueDepth(){
+    return queue.size();
+  }
+
+  /**
+  * Obtain the max depth the input queue reached.
+  * @return Peak queue depth.
+  */
+  public int getPeakQueueDepth(){
+    return peakDepth.get();
+  }
+
+  /**
+  * Obtain the number of URLs received from JSpider.
+  * @return URL count.
+  */
+  public long getOffered(){
+    return offered.get();
+  }
+
+  /**
+  * Obtain the number of URLs dropped by the backpressure policy.
+  * @return URL count.
+  */
+  public long getDropped(){
+    return dropped.get();
+  }
+
+  /**
+  * Obtain the number of URLs handed to the plugin.
+  * @return URL count.
+  */
+  public long getProcessed(){
+    return processed.get();
+  }
+
+  /**
+  * Obtain the number of exceptions thrown by the plugin.
+  * @return Error count.
+  */
+  public long getErrors(){
+    return errors.get();
+  }
+
+  /**
+  * Obtain the plugin's throughput since it started.
+  * @return URLs handed to the plugin per second.
+  */
+  public double getThroughput(){
+
+    long end = (isDone() ? endTime : System.currentTimeMillis());
+    return processed.get() * 1000.0 / Math.max(1, end - startTime);
+  }
+
+  /**
+  * Obtain a one-line summary of the runner's stats.
+  * @return Stats summary.
+  */
+  public String getStats(){
+    return String.format("%d URLs processed (%.1f/s), %d dropped, %d errors, queue %d/%d (peak %d, %s), %d workers",
+                         getProcessed(), getThroughput(), getDropped(), getErrors(), getQueueDepth(), capacity, getPeakQueueDepth(), policy, workers);
+  }
+}
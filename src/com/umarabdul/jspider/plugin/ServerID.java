@@ -1,28 +1,42 @@
 package com.umarabdul.jspider.plugin;
 
 import java.io.*;
+import java.net.*;
 import java.util.*;
-import org.jsoup.Connection.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import javax.net.ssl.HttpsURLConnection;
 import com.umarabdul.jspider.*;
-import com.umarabdul.jbrowser.*;
 
 
 /**
 * A JSpider plugin for identifying web servers using the "Server" HTTP response header.
+* Hosts are probed concurrently by the plugin's workers, with a single HEAD request per host that is not redirected,
+* and the fingerprint includes all response headers, the TLS cipher suite and certificate, and the redirect location.
+* A host that can't be reached is probed again for a later URL, up to 3 times.
 *
 * @author Umar Abdul
-* @version 1.0
+* @version 1.1
 * Date: 01/Oct/2020
 */
 
 public class ServerID extends Plugin{
 
+  private static final int MAX_ATTEMPTS = 3;
+
+  private Set<String> scanned = ConcurrentHashMap.newKeySet(); // Hosts identified, or being probed.
+  private ConcurrentHashMap<String, Integer> failures = new ConcurrentHashMap<String, Integer>(); // Failed probes per host.
+  private BufferedWriter writer = null;
+
   public ServerID(JSpider spider){
-  
+
     super(spider);
     setPluginName("ServerID"); // Define the plugin name to be used in console outputs.
+    // Max number of hosts to probe at a time.
+    setDefaultWorkers(getOption("threads") == null ? 10 : Integer.valueOf(getOption("threads")));
   }
-  
+
   /**
   * Return a string array containing the names of options required by this plugin.
   * @return Array of option names.
@@ -35,66 +49,137 @@ public class ServerID extends Plugin{
   }
 
   /**
-  * Called in a background thread to start the plugin.
+  * Open the output file, if any.
+  * @return {@code false} on error.
   */
   @Override
-  public void run(){
+  public boolean setup(){
 
-    String url = null;
-    ArrayList<String> scanned = new ArrayList<String>();
-    JBrowser jb = getBrowser();
-    String host = null;
-    String banner = null;
     String outfile = getOption("outfile");
-    BufferedWriter writer = null;
     if (outfile != null){
       try{
         writer = new BufferedWriter(new FileWriter(outfile));
-        writer.write("HOST\tSERVER\n");
+        writer.write("HOST\tSERVER\tSTATUS\tTLS\tLOCATION\tHEADERS\n");
         writer.flush();
       }catch(IOException e){
         printError(String.format("Error creating output file: %s", e.getMessage()));
-        return;
+        return false;
       }
     }
-    while (true){
-      url = getURL();
-      if (url == null){ // Shutdown the plugin.
-        if (writer != null){
-          try{
-            writer.close();
-          }catch(IOException e){}
-        }
-        return;
-      }
-      try{
-        host = url.split("://")[1];
-        host = host.split("/")[0];
-      }catch(IndexOutOfBoundsException e){
-        continue;
-      }
-      if (scanned.contains(host))
-        continue;
+    return true;
+  }
+
+  /**
+  * Called from the plugin's workers for every URL, probes the URL's host if not identified already.
+  * @param url URL yielded by JSpider.
+  */
+  @Override
+  public void process(String url){
+
+    URL urlObj = null;
+    try{
+      urlObj = new URL(url);
+    }catch(MalformedURLException e){
+      return;
+    }
+    String host = urlObj.getHost().toLowerCase();
+    if (failures.getOrDefault(host, 0) >= MAX_ATTEMPTS || !(scanned.add(host)))
+      return;
+    if (!(probe(host, String.format("%s://%s/", urlObj.getProtocol(), urlObj.getAuthority())))){
+      failures.merge(host, 1, Integer::sum);
+      scanned.remove(host); // Let a later URL of the host try again.
+    }
+  }
+
+  /**
+  * Close the output file.
+  */
+  @Override
+  public void shutdown(){
+
+    if (writer != null){
       try{
-        jb.open(String.format("%s://%s/", url.split("://")[0], host), Method.HEAD, null);
-      }catch(JBrowserException e){
-        continue;
-      }
-      scanned.add(host);
-      banner = jb.getResponseHeader("Server");
-      if (banner == null){
-        printError("Error identifying host: " +host);
-        continue;
-      }
-      banner = banner.trim();
+        writer.close();
+      }catch(IOException e){}
+    }
+  }
+
+  /**
+  * Fingerprint a host from the response to a HEAD request of its root.
+  * @param host Host name.
+  * @param target Root URL of the host, with the scheme and port of the URL it was found in.
+  * @return {@code false} if no response was received.
+  */
+  private boolean probe(String host, String target){
+
+    JSpider spider = getSpider();
+    Map<String, List<String>> headers = null;
+    String tls = "-";
+    String location = null;
+    int status = 0;
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, String> cookie : spider.getCookies().entrySet())
+      sb.append(sb.length() > 0 ? "; " : "").append(cookie.getKey()).append("=").append(cookie.getValue());
+    String cookies = sb.toString();
+    try{
+      HttpURLConnection conn = (HttpURLConnection)(new URL(target).openConnection(spider.getProxy()));
+      conn.setRequestMethod("HEAD");
+      conn.setInstanceFollowRedirects(false); // Fingerprint the host's own response, not a redirect target's.
+      conn.setConnectTimeout(spider.getTimeout());
+      conn.setReadTimeout(spider.getTimeout());
+      for (Map.Entry<String, String> header : spider.getHeaders().entrySet())
+        conn.setRequestProperty(header.getKey(), header.getValue());
+      if (cookies.length() > 0)
+        conn.setRequestProperty("Cookie", cookies);
+      status = conn.getResponseCode();
+      headers = conn.getHeaderFields();
+      if (conn instanceof HttpsURLConnection)
+        tls = describeTLS((HttpsURLConnection)conn);
+      location = conn.getHeaderField("Location");
+      conn.disconnect();
+    }catch(IOException e){
+      printError(String.format("Error identifying host: %s (%s)", host, e.getMessage()));
+      return false;
+    }
+    String banner = null;
+    StringBuilder all = new StringBuilder();
+    for (Map.Entry<String, List<String>> header : headers.entrySet()){
+      if (header.getKey() == null)
+        continue; // Status line.
+      if (header.getKey().equalsIgnoreCase("Server"))
+        banner = String.join(", ", header.getValue()).trim();
+      all.append(all.length() > 0 ? "; " : "").append(header.getKey()).append(": ").append(String.join(", ", header.getValue()));
+    }
+    if (banner == null){
+      printError("Error identifying host: " +host);
+      banner = "-";
+    }else{
       printSuccess(String.format("Host: %s  Server: %s", host, banner));
-      if (writer != null){
+    }
+    if (writer != null){
+      synchronized(this){
         try{
-          writer.write(String.format("%s\t%s\n", host, banner));
+          writer.write(String.format("%s\t%s\t%d\t%s\t%s\t%s\n", host, banner, status, tls, (location == null ? "-" : location.replace("\t", " ")), all.toString().replace("\t", " ")));
           writer.flush();
         }catch(IOException e){}
       }
     }
+    return true;
   }
 
+  /**
+  * Describe the TLS session of a connection: cipher suite and leaf certificate.
+  */
+  private String describeTLS(HttpsURLConnection conn){
+
+    StringBuilder sb = new StringBuilder(conn.getCipherSuite());
+    try{
+      Certificate[] certs = conn.getServerCertificates();
+      if (certs.length > 0 && certs[0] instanceof X509Certificate){
+        X509Certificate cert = (X509Certificate)certs[0];
+        sb.append(String.format("; subject=%s; issuer=%s; expires=%tF", cert.getSubjectX500Principal().getName(), cert.getIssuerX500Principal().getName(), cert.getNotAfter()));
+      }
+    }catch(IOException e){}
+    return sb.toString().replace("\t", " ");
+  }
 }